@@ -0,0 +1,12 @@
+package com.birblett.accessor.command;
+
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.context.CommandContextBuilder;
+import com.mojang.brigadier.tree.CommandNode;
+
+public interface CommandDispatcherModifier<S> {
+
+    ParseResults<S> technicalToolbox$parseNodes(CommandNode<S> node, StringReader reader, CommandContextBuilder<S> context);
+
+}
@@ -0,0 +1,10 @@
+package com.birblett.accessor.command;
+
+import net.minecraft.network.packet.s2c.play.CommandTreeS2CPacket;
+import net.minecraft.server.command.ServerCommandSource;
+
+public interface CommandManagerModifier {
+
+    CommandTreeS2CPacket technicalToolbox$buildCommandTree(ServerCommandSource source);
+
+}
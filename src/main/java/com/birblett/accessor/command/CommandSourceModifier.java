@@ -9,8 +9,6 @@ public interface CommandSourceModifier {
 
     void technicalToolbox$setPermissionOverride(boolean override);
     void technicalToolbox$shutUp(boolean shutUp);
-    void technicalToolbox$addSelector(String name, String value);
-    String technicalToolbox$getSelectorArgument(String name);
     void technicalToolbox$setReturnValue(Operator o);
     Operator technicalToolbox$getReturnValue();
     void technicalToolbox$addCriterion(ScoreboardCriterion criterion);
@@ -1,5 +1,6 @@
 package com.birblett.accessor.command.delay;
 
+import com.birblett.impl.command.alias.SuspendedAlias;
 import com.birblett.impl.command.delay.CommandEvent;
 import net.minecraft.server.command.ServerCommandSource;
 
@@ -10,5 +11,6 @@ public interface CommandScheduler {
     boolean technicalToolbox$AddCommandEvent(String command, long delay, String id, int priority, boolean silent, ServerCommandSource source);
     boolean technicalToolbox$RemoveCommandEvent(String id);
     HashMap<String, CommandEvent> technicalToolbox$GetCommandEventMap();
+    void technicalToolbox$AddSuspendedAlias(SuspendedAlias alias);
 
 }
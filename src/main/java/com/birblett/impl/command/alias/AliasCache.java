@@ -0,0 +1,157 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.language.BytecodeCompiler;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.InstructionCodec;
+import com.birblett.impl.command.alias.language.Variable;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of compiled aliases, so that unchanged alias files aren't recompiled on every start. Each alias gets a
+ * single file holding its optimized, linked instructions and slot layout, keyed by a hash of its script, arguments,
+ * optimizer setting and purity along with the mod version. Stale or unreadable entries are recompiled and overwritten.
+ * Generated bytecode can't be stored, so it's regenerated from the cached instructions instead.
+ */
+public class AliasCache {
+
+    private static final int MAGIC = 0x54544143;
+    private static String version = null;
+
+    private static String modVersion() {
+        if (version == null) {
+            version = FabricLoader.getInstance().getModContainer("technical_toolbox").map(c -> c.getMetadata().getVersion()
+                    .getFriendlyString()).orElse("unknown");
+        }
+        return version;
+    }
+
+    /**
+     * @return hash of everything that affects how an alias compiles, or null if hashing isn't available
+     */
+    public static byte[] hash(List<String> commands, Collection<Variable.Definition> arguments, boolean optimize, boolean pure) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Variable.Definition var : arguments) {
+                digest.update((var.name + ":" + var.typeName + "|" + String.join(",", var.args) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            for (String command : commands) {
+                digest.update((command + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) (optimize ? 1 : 0));
+            // pure aliases are checked while compiling, so cached entries of impure ones can't be reused for them
+            digest.update((byte) (pure ? 1 : 0));
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loads a cached alias with a single read, linking it and generating bytecode if enabled.
+     * @param file cache file, may be null
+     * @param hash expected hash from {@link #hash}, may be null
+     * @return the compiled alias, or null if there's no up-to-date cache entry
+     */
+    public static CompiledAlias read(Path file, byte[] hash, AliasedCommand alias, Collection<Variable.Definition> arguments,
+                                     boolean generate) {
+        if (file == null || hash == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != InstructionCodec.FORMAT || !in.readUTF().equals(modVersion())) {
+                return null;
+            }
+            byte[] stored = new byte[in.readUnsignedByte()];
+            in.readFully(stored);
+            if (!Arrays.equals(stored, hash)) {
+                return null;
+            }
+            LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+            int size = in.readUnsignedShort();
+            for (int i = 0; i < size; i++) {
+                slots.put(in.readUTF(), i);
+            }
+            List<String> report = null;
+            int lines = in.readShort();
+            if (lines >= 0) {
+                report = new ArrayList<>();
+                for (int i = 0; i < lines; i++) {
+                    report.add(in.readUTF());
+                }
+            }
+            List<Instruction> instructions = InstructionCodec.read(in);
+            for (Instruction instruction : instructions) {
+                instruction.link(slots);
+            }
+            // calls are stored as plain commands, since which aliases exist can change without the script changing.
+            // tail [call]s are found by the slot they return, so this has to happen after linking, as in a rebind
+            List<Instruction> linked = List.copyOf(instructions);
+            if (AliasedCommand.bindCalls(instructions, alias.getAlias())) {
+                for (int i = 0; i < instructions.size(); i++) {
+                    if (instructions.get(i) != linked.get(i)) {
+                        instructions.get(i).link(slots);
+                    }
+                }
+            }
+            // linking shouldn't introduce anything new, otherwise the stored layout doesn't match
+            if (slots.size() != size) {
+                return null;
+            }
+            BytecodeCompiler.CompiledProgram program = generate ? BytecodeCompiler.compile(alias, instructions, arguments, slots) : null;
+            return new CompiledAlias(instructions, slots, arguments, program, report, alias.isPure());
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a compiled alias, unless it uses instructions that can't be encoded.
+     * @param file cache file, may be null
+     * @param hash hash from {@link #hash}, may be null
+     */
+    public static void write(Path file, byte[] hash, CompiledAlias compiled) {
+        if (file == null || hash == null || !InstructionCodec.supports(compiled.instructions)) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(InstructionCodec.FORMAT);
+            out.writeUTF(modVersion());
+            out.writeByte(hash.length);
+            out.write(hash);
+            out.writeShort(compiled.slots.size());
+            for (String name : compiled.slots.keySet()) {
+                out.writeUTF(name);
+            }
+            if (compiled.optimizerReport == null) {
+                out.writeShort(-1);
+            }
+            else {
+                out.writeShort(compiled.optimizerReport.size());
+                for (String line : compiled.optimizerReport) {
+                    out.writeUTF(line);
+                }
+            }
+            InstructionCodec.write(out, compiled.instructions);
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes.toByteArray());
+        }
+        catch (IOException e) {
+            TechnicalToolbox.warn("Couldn't write alias cache {}", file);
+        }
+    }
+
+}
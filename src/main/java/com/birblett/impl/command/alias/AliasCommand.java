@@ -57,7 +57,26 @@ public class AliasCommand {
                         .requires(source -> true)
                         .then(CommandManager.argument("alias", StringArgumentType.word())
                                 .suggests(AliasCommand::listAliases)
-                                .executes(AliasCommand::compile)))
+                                .then(CommandManager.literal("verbose")
+                                        .executes(context -> AliasCommand.compile(context, true)))
+                                .executes(context -> AliasCommand.compile(context, false))))
+                // shows profiling results, if enabled
+                .then(CommandManager.literal("profile")
+                        .then(CommandManager.literal("top")
+                                .executes(AliasCommand::profileTop))
+                        .then(CommandManager.literal("reset")
+                                .requires(source -> source.hasPermissionLevel(4))
+                                .executes(AliasCommand::profileReset))
+                        .then(CommandManager.literal("alias")
+                                .then(CommandManager.argument("alias", StringArgumentType.word())
+                                        .suggests(AliasCommand::listAliases)
+                                        .executes(AliasCommand::profile))))
+                // shows the per-tick alias budget and deferred executions
+                .then(CommandManager.literal("scheduler")
+                        .then(CommandManager.literal("reset")
+                                .requires(source -> source.hasPermissionLevel(4))
+                                .executes(AliasCommand::schedulerReset))
+                        .executes(AliasCommand::scheduler))
                 // modifies an existing alias
                 .then(CommandManager.literal("modify")
                         .requires(source -> source.hasPermissionLevel(4))
@@ -94,6 +113,10 @@ public class AliasCommand {
                                 .then(CommandManager.literal("silent")
                                         .then(CommandManager.argument("silent execution", BoolArgumentType.bool())
                                                 .executes(AliasCommand::modifySilent)))
+                                // sets whether the alias is pure, memoizing its results
+                                .then(CommandManager.literal("pure")
+                                        .then(CommandManager.argument("pure", BoolArgumentType.bool())
+                                                .executes(AliasCommand::modifyPure)))
                                 // edit arguments of the alias
                                 .then(CommandManager.literal("argument")
                                         // add an argument without replacing it
@@ -182,13 +205,9 @@ public class AliasCommand {
             alias.deregister(context.getSource().getServer(), false);
         }
         TechnicalToolbox.ALIAS_MANAGER.readAliases(context.getSource().getServer());
-        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
-            try {
-                aliasedCommand.register(context.getSource().getDispatcher());
-            }
-            catch (Exception e) {
-                TechnicalToolbox.error("Something went wrong with compiling alias {}", aliasedCommand.getAlias());
-            }
+        TechnicalToolbox.ALIAS_MANAGER.registerAliases(context.getSource().getDispatcher());
+        if (ConfigOptions.ALIAS_LAZY_COMPILATION.val()) {
+            TechnicalToolbox.ALIAS_MANAGER.validateAliases();
         }
         context.getSource().sendFeedback(() -> TextUtils.formattable("Reloaded aliases from disk"), false);
         ServerUtil.refreshCommandTree(context.getSource().getServer());
@@ -222,9 +241,10 @@ public class AliasCommand {
     }
 
     /**
-     * Forcefully compiles an alias. Mostly useful if auto-compilation is disabled.
+     * Forcefully compiles an alias. Mostly useful if auto-compilation is disabled. If verbose, also reports what the
+     * optimizer changed.
      */
-    private static int compile(CommandContext<ServerCommandSource> context) {
+    private static int compile(CommandContext<ServerCommandSource> context, boolean verbose) {
         String alias = context.getArgument("alias", String.class);
         AliasedCommand cmd = AliasManager.ALIASES.get(alias);
         if (cmd != null) {
@@ -236,6 +256,21 @@ public class AliasCommand {
             if (cmd.refresh(context.getSource())) {
                 context.getSource().sendFeedback(() -> TextUtils.formattable("Successfully compiled alias ")
                         .append(TextUtils.formattable(alias).formatted(Formatting.GREEN)), false);
+                if (verbose) {
+                    List<String> report = cmd.getOptimizerReport();
+                    MutableText out = TextUtils.formattable("Optimizer: ");
+                    if (report == null) {
+                        out.append(TextUtils.formattable("disabled").formatted(Formatting.GRAY));
+                    }
+                    else {
+                        for (String line : report) {
+                            out.append(TextUtils.formattable("\n  " + line).formatted(Formatting.YELLOW));
+                        }
+                    }
+                    out.append(TextUtils.formattable("\nExecution: ")).append(TextUtils.formattable(cmd.isBytecodeCompiled() ?
+                            "bytecode" : "interpreted").formatted(Formatting.GREEN));
+                    context.getSource().sendFeedback(() -> out, false);
+                }
                 return 1;
             }
             return 0;
@@ -244,6 +279,94 @@ public class AliasCommand {
         return 0;
     }
 
+    private static String micros(long nanos) {
+        return String.format("%.1fµs", nanos / 1000.0);
+    }
+
+    /**
+     * Shows per-instruction profiling results for an alias, since it was last compiled or reset.
+     */
+    private static int profile(CommandContext<ServerCommandSource> context) {
+        String alias = context.getArgument("alias", String.class);
+        AliasedCommand cmd = AliasManager.ALIASES.get(alias);
+        if (cmd == null || cmd.getCompiled() == null) {
+            context.getSource().sendError(TextUtils.formattable("Couldn't find compiled alias \"" + alias + "\""));
+            return 0;
+        }
+        CompiledAlias compiled = cmd.getCompiled();
+        AliasProfile profile = compiled.profile;
+        MutableText out = TextUtils.formattable("Profile for ").append(TextUtils.formattable(alias).formatted(Formatting.GREEN))
+                .append(TextUtils.formattable(": " + profile.getInvocations() + " invocation(s), " + micros(profile.getTotalNanos()) +
+                        " total, " + micros(profile.getMaxNanos()) + " max"));
+        if (!ConfigOptions.ALIAS_PROFILING.val()) {
+            out.append(TextUtils.formattable(" (profiling disabled)").formatted(Formatting.GRAY));
+        }
+        for (int i = 0; i < compiled.instructions.size(); i++) {
+            out.append(TextUtils.formattable("\n  " + i + ": ").formatted(Formatting.GRAY))
+                    .append(TextUtils.formattable(compiled.instructions.get(i).toString()).formatted(Formatting.YELLOW))
+                    .append(TextUtils.formattable(" - " + profile.getHits(i) + " hit(s), " + micros(profile.getNanos(i))));
+        }
+        context.getSource().sendFeedback(() -> out, false);
+        return 1;
+    }
+
+    /**
+     * Lists the aliases with the most total execution time.
+     */
+    private static int profileTop(CommandContext<ServerCommandSource> context) {
+        MutableText out = TextUtils.formattable("Most expensive aliases:");
+        if (!ConfigOptions.ALIAS_PROFILING.val()) {
+            out.append(TextUtils.formattable(" (profiling disabled)").formatted(Formatting.GRAY));
+        }
+        AliasManager.ALIASES.values().stream().filter(cmd -> cmd.getCompiled() != null && cmd.getCompiled().profile.getInvocations() > 0)
+                .sorted(Comparator.comparingLong(cmd -> -cmd.getCompiled().profile.getTotalNanos())).limit(10).forEach(cmd -> {
+                    AliasProfile profile = cmd.getCompiled().profile;
+                    out.append(TextUtils.formattable("\n  " + cmd.getAlias()).formatted(Formatting.GREEN))
+                            .append(TextUtils.formattable(": " + micros(profile.getTotalNanos()) + " total, " + profile.getInvocations() +
+                                    " invocation(s), " + micros(profile.getTotalNanos() / profile.getInvocations()) + " avg, " +
+                                    micros(profile.getMaxNanos()) + " max"));
+                });
+        context.getSource().sendFeedback(() -> out, false);
+        return 1;
+    }
+
+    /**
+     * Clears profiling results for all aliases.
+     */
+    private static int profileReset(CommandContext<ServerCommandSource> context) {
+        for (AliasedCommand cmd : AliasManager.ALIASES.values()) {
+            if (cmd.getCompiled() != null) {
+                cmd.getCompiled().profile.reset();
+            }
+        }
+        context.getSource().sendFeedback(() -> TextUtils.formattable("Reset alias profiling results"), false);
+        return 1;
+    }
+
+    /**
+     * Shows the per-tick alias budget and how many executions had to be deferred.
+     */
+    private static int scheduler(CommandContext<ServerCommandSource> context) {
+        MutableText out = TextUtils.formattable("Alias scheduler:");
+        if (!AliasScheduler.isEnabled()) {
+            out.append(TextUtils.formattable(" (no tick budget)").formatted(Formatting.GRAY));
+        }
+        for (String line : AliasScheduler.report()) {
+            out.append(TextUtils.formattable("\n  " + line).formatted(Formatting.YELLOW));
+        }
+        context.getSource().sendFeedback(() -> out, false);
+        return 1;
+    }
+
+    /**
+     * Clears scheduler deferral statistics.
+     */
+    private static int schedulerReset(CommandContext<ServerCommandSource> context) {
+        AliasScheduler.resetStats();
+        context.getSource().sendFeedback(() -> TextUtils.formattable("Reset alias scheduler statistics"), false);
+        return 1;
+    }
+
     /**
      * Renames an existing alias, if not global.
      */
@@ -465,6 +588,32 @@ public class AliasCommand {
         return 0;
     }
 
+    /**
+     * Sets whether an alias is pure, which is checked when it's compiled; recompiles it if auto-compilation is enabled.
+     */
+    private static int modifyPure(CommandContext<ServerCommandSource> context) {
+        String alias = context.getArgument("alias", String.class);
+        boolean pure = context.getArgument("pure", Boolean.class);
+        AliasedCommand cmd = AliasManager.ALIASES.get(alias);
+        if (cmd != null) {
+            if (cmd.global) {
+                context.getSource().sendError(TextUtils.formattable("Alias \"" + alias + "\" is global and " +
+                        "can't be modified via commands"));
+                return 0;
+            }
+            cmd.setPure(pure);
+            context.getSource().sendFeedback(() -> TextUtils.formattable("Alias ").append(
+                    TextUtils.formattable(alias).formatted(Formatting.GREEN)).append(TextUtils.formattable(" set to " + (pure ?
+                    "pure" : "impure"))), false);
+            if (ConfigOptions.ALIAS_MODIFY_COMPILE.val()) {
+                cmd.refresh(context.getSource());
+            }
+            return 1;
+        }
+        context.getSource().sendError(TextUtils.formattable("Couldn't find alias \"" + alias + "\""));
+        return 0;
+    }
+
     /**
      * Returns the relevant info corresponding to an alias (name, global status, permission, silent, etc.)
      */
@@ -477,6 +626,13 @@ public class AliasCommand {
             out.append(cmd.getCommandText());
             out.append(TextUtils.formattable("\nPermission level: ").append(TextUtils.formattable(String.valueOf(cmd.getPermission()))
                     .formatted(Formatting.GREEN)));
+            out.append(TextUtils.formattable("\nExecution: ").append(TextUtils.formattable(cmd.getCompiled() == null ? "not compiled yet" :
+                    cmd.isBytecodeCompiled() ? "bytecode" : "interpreted").formatted(Formatting.GREEN)));
+            CompiledAlias compiled = cmd.getCompiled();
+            if (compiled != null && compiled.memo != null) {
+                out.append(TextUtils.formattable("\nPure: ").append(TextUtils.formattable(compiled.memo.size() + " cached, " +
+                        compiled.memo.getHits() + " hit(s), " + compiled.memo.getMisses() + " miss(es)").formatted(Formatting.GREEN)));
+            }
             if (cmd.hasArguments()) {
                 out.append("\nSyntax: ").append(cmd.getVerboseSyntax());
             }
@@ -632,6 +788,14 @@ public class AliasCommand {
                                 .then(CommandManager.argument("regex", StringArgumentType.string())
                                         .executes(context -> modifyArgumentSet(context, "regex", replace, String.class,
                                                 "regex"))))
+                        .then(CommandManager.literal("entity")
+                                .executes(context -> modifyArgumentSet(context, "entity", replace, String.class)))
+                        .then(CommandManager.literal("entities")
+                                .executes(context -> modifyArgumentSet(context, "entities", replace, String.class)))
+                        .then(CommandManager.literal("block_pos")
+                                .executes(context -> modifyArgumentSet(context, "block_pos", replace, String.class)))
+                        .then(CommandManager.literal("vec3")
+                                .executes(context -> modifyArgumentSet(context, "vec3", replace, String.class)))
                         .then(CommandManager.literal("selection")
                                 .then(CommandManager.argument("comma_separated_selection", StringArgumentType.greedyString())
                                         .executes(context -> modifyArgumentSet(context, "selection", replace, String.class)))));
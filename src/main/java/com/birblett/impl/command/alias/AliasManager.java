@@ -1,9 +1,13 @@
 package com.birblett.impl.command.alias;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.language.Variable;
 import com.birblett.impl.config.ConfigOptions;
 import com.birblett.util.ServerUtil;
+import com.mojang.brigadier.CommandDispatcher;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.util.Util;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
@@ -11,10 +15,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles writing and reading of configuration options, with methods called on server start and close
@@ -22,8 +25,13 @@ import java.util.Map;
 public class AliasManager {
 
     public static final Map<String, AliasedCommand> ALIASES = new HashMap<>();
+    // aliases registered to the dispatcher, which other aliases call directly; read while compiling off-thread
+    private static final Set<String> CALLABLE = ConcurrentHashMap.newKeySet();
     public static final String ALIAS_PATH = "aliases";
     public static final String RECYCLE_PATH = "aliases/recycle";
+    public static final String CACHE_PATH = "aliases/cache";
+
+    private record Loaded(AliasedCommand alias, List<String> errors) {}
 
     public AliasManager() {
     }
@@ -37,15 +45,112 @@ public class AliasManager {
             AliasManager.ALIASES.get(key).deregister(server, false);
         }
         AliasManager.ALIASES.clear();
+        AliasManager.CALLABLE.clear();
         this.readAliases(server);
+        this.registerAliases(server.getCommandSource().getDispatcher());
+        if (ConfigOptions.ALIAS_LAZY_COMPILATION.val()) {
+            this.validateAliases();
+        }
+    }
+
+    /**
+     * Registers every loaded alias to a dispatcher. Aliases are already compiled while loading unless compilation is
+     * lazy, so this only builds their command trees; ones that failed to compile are skipped.
+     */
+    public void registerAliases(CommandDispatcher<ServerCommandSource> dispatcher) {
+        boolean lazy = ConfigOptions.ALIAS_LAZY_COMPILATION.val();
+        // marked all at once, so callers are rebound once afterward instead of after each registration
+        Set<String> names = new HashSet<>();
+        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
+            if (lazy || aliasedCommand.getCompiled() != null) {
+                names.add(aliasedCommand.getAlias());
+            }
+        }
+        AliasManager.CALLABLE.addAll(names);
         for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
             try {
-                aliasedCommand.register(server.getCommandSource().getDispatcher());
+                if (lazy || aliasedCommand.getCompiled() != null) {
+                    aliasedCommand.register(dispatcher, true);
+                }
             }
             catch (Exception e) {
                 TechnicalToolbox.error("Something went wrong with compiling alias {}", aliasedCommand.getAlias());
             }
         }
+        AliasManager.bindCallers(names);
+    }
+
+    /**
+     * @return whether an alias is registered, so that other aliases can call it directly
+     */
+    public static boolean isCallable(String name) {
+        return AliasManager.CALLABLE.contains(name);
+    }
+
+    /**
+     * Marks an alias as callable or not. Aliases that already run it as a command are rebound to call it directly, but
+     * not the other way around, since calls to an alias that's gone fall back to the dispatcher anyway.
+     * @return whether it changed
+     */
+    public static boolean setCallable(String name, boolean callable) {
+        if (!callable) {
+            return AliasManager.CALLABLE.remove(name);
+        }
+        if (!AliasManager.CALLABLE.add(name)) {
+            return false;
+        }
+        AliasManager.bindCallers(Set.of(name));
+        return true;
+    }
+
+    /**
+     * Rebinds compiled aliases that run any of the given aliases as plain commands.
+     */
+    private static void bindCallers(Set<String> names) {
+        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
+            CompiledAlias compiled = aliasedCommand.getCompiled();
+            if (compiled != null && !Collections.disjoint(compiled.commandTargets, names)) {
+                aliasedCommand.rebind();
+            }
+        }
+    }
+
+    /**
+     * Compiles every alias in the background without publishing anything, so that compile errors are still logged when
+     * aliases are registered lazily. Scripts are copied first, so later modifications don't affect the pass.
+     */
+    public void validateAliases() {
+        List<AliasedCommand> aliases = List.copyOf(AliasManager.ALIASES.values());
+        List<List<String>> scripts = new ArrayList<>();
+        List<LinkedHashMap<String, Variable.Definition>> arguments = new ArrayList<>();
+        for (AliasedCommand alias : aliases) {
+            scripts.add(List.copyOf(alias.getCommands()));
+            LinkedHashMap<String, Variable.Definition> args = new LinkedHashMap<>();
+            for (Variable.Definition def : alias.getArguments()) {
+                args.put(def.name, def);
+            }
+            arguments.add(args);
+        }
+        CompletableFuture.runAsync(() -> {
+            int failed = 0;
+            for (int i = 0; i < aliases.size(); i++) {
+                try {
+                    if (!aliases.get(i).validate(scripts.get(i), arguments.get(i))) {
+                        failed++;
+                    }
+                }
+                catch (Exception e) {
+                    TechnicalToolbox.error("Something went wrong with compiling alias {}", aliases.get(i).getAlias());
+                    failed++;
+                }
+            }
+            if (failed > 0) {
+                TechnicalToolbox.warn("{} of {} aliases failed to compile", failed, aliases.size());
+            }
+            else {
+                TechnicalToolbox.log("Validated {} aliases", aliases.size());
+            }
+        }, Util.getMainWorkerExecutor());
     }
 
     /**
@@ -57,46 +162,99 @@ public class AliasManager {
             AliasManager.ALIASES.get((String) key).deregister(server, false);
         }
         AliasManager.ALIASES.clear();
+        AliasManager.CALLABLE.clear();
     }
 
     /**
-     * Read all aliases from storage and compile + register them.
+     * Read all aliases from storage into memory, compiling them unless compilation is lazy. Files are read and compiled
+     * in parallel on the worker pool, then added in file name order with their errors logged in that same order, so the
+     * result and logs don't depend on which finished first. Aliases still have to be registered afterward.
      */
     public void readAliases(MinecraftServer server) {
+        boolean compile = !ConfigOptions.ALIAS_LAZY_COMPILATION.val();
         File global = ServerUtil.getGlobalToolboxPath(server, ALIAS_PATH).toFile();
         ServerUtil.createDirectoryIfNotPresent(global);
-        int globalCount = 0;
         File[] globalDir = global.listFiles();
-        if (globalDir != null) {
-            for (File f : globalDir) {
-                if (f.getPath().endsWith(".alias") && AliasedCommand.readFromFile(f.toPath(), true)) {
-                    globalCount++;
-                }
-            }
-            if (globalCount > 0) {
-                TechnicalToolbox.log("Loaded " + globalCount + " global aliases");
-            }
-        }
+        List<CompletableFuture<Loaded>> globalTasks = globalDir != null ? AliasManager.load(globalDir, true, compile) : List.of();
         File directory = ServerUtil.getToolboxPath(server, ALIAS_PATH).toFile();
+        File[] files = null;
         if (!ServerUtil.createDirectoryIfNotPresent(directory)){
             TechnicalToolbox.error("Failed to create {} directory, aliases will not be saved", ALIAS_PATH);
-            return;
         }
-        File[] files;
-        if ((files = directory.listFiles()) != null) {
+        else if ((files = directory.listFiles()) == null) {
+            TechnicalToolbox.warn("Couldn't list files for alias directory, skipping alias loading step");
+        }
+        List<CompletableFuture<Loaded>> tasks = files != null ? AliasManager.load(files, false, compile) : List.of();
+        int globalCount = 0;
+        for (CompletableFuture<Loaded> task : globalTasks) {
+            if (AliasManager.add(task.join())) {
+                globalCount++;
+            }
+        }
+        if (globalCount > 0) {
+            TechnicalToolbox.log("Loaded " + globalCount + " global aliases");
+        }
+        if (files != null) {
             int count = 0;
-            for (File f : files) {
-                String name = f.getName().substring(0, f.getName().length() - 6);
-                if (f.getPath().endsWith(".alias") && !(AliasManager.ALIASES.containsKey(name) && AliasManager.ALIASES.get(name).global) &&
-                        AliasedCommand.readFromFile(f.toPath(), false)) {
+            for (int i = 0; i < tasks.size(); i++) {
+                Loaded loaded = tasks.get(i).join();
+                // global aliases take priority, in which case the local copy is ignored entirely
+                if (loaded.alias != null && AliasManager.isGlobal(loaded.alias.getAlias())) {
+                    continue;
+                }
+                if (AliasManager.add(loaded)) {
                     count++;
                 }
             }
             TechnicalToolbox.log("Loaded " + count + " aliases");
         }
-        else {
-            TechnicalToolbox.warn("Couldn't list files for alias directory, skipping alias loading step");
+    }
+
+    /**
+     * Starts reading and optionally compiling every alias file in a directory listing on the worker pool.
+     * @return one task per alias file, sorted by file name
+     */
+    private static List<CompletableFuture<Loaded>> load(File[] files, boolean global, boolean compile) {
+        List<CompletableFuture<Loaded>> tasks = new ArrayList<>();
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (File f : files) {
+            if (!f.getPath().endsWith(".alias")) {
+                continue;
+            }
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                List<String> errors = new ArrayList<>();
+                AliasedCommand alias = AliasedCommand.readFromFile(f.toPath(), global, errors);
+                if (alias != null) {
+                    alias.setCacheFile(f.toPath().resolveSibling("cache").resolve(alias.getAlias() + ".bin"));
+                }
+                if (alias != null && compile) {
+                    alias.precompile();
+                }
+                return new Loaded(alias, errors);
+            }, Util.getMainWorkerExecutor()));
         }
+        return tasks;
+    }
+
+    /**
+     * Logs errors from loading an alias and adds it if it was read successfully; called on the server thread.
+     * @return whether the alias was added
+     */
+    private static boolean add(Loaded loaded) {
+        for (String error : loaded.errors) {
+            TechnicalToolbox.error(error);
+        }
+        if (loaded.alias == null) {
+            return false;
+        }
+        loaded.alias.finishLoading();
+        AliasManager.ALIASES.put(loaded.alias.getAlias(), loaded.alias);
+        return true;
+    }
+
+    private static boolean isGlobal(String name) {
+        AliasedCommand alias = AliasManager.ALIASES.get(name);
+        return alias != null && alias.global;
     }
 
     /**
@@ -134,6 +292,16 @@ public class AliasManager {
                     TechnicalToolbox.log("Removed {} old alias{} from the recycle bin", removed, removed > 1 ? "es" : "");
                 }
             }
+            // cached compiles of aliases that no longer exist
+            File[] cached = ServerUtil.getToolboxPath(server, CACHE_PATH).toFile().listFiles((dir, name) -> name.endsWith(".bin"));
+            if (cached != null) {
+                for (File file : cached) {
+                    String name = file.getName().substring(0, file.getName().length() - 4);
+                    if (!AliasManager.ALIASES.containsKey(name) || AliasManager.ALIASES.get(name).global) {
+                        Files.deleteIfExists(file.toPath());
+                    }
+                }
+            }
         } catch (IOException e) {
             TechnicalToolbox.error("Failed to clean alias directory, please report");
         }
@@ -0,0 +1,83 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.command.alias.language.Variable;
+import com.birblett.impl.config.ConfigOptions;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.*;
+
+/**
+ * Return values of a single compiled pure alias, keyed by the arguments they were returned for and evicted least recently
+ * used first. Belongs to one compiled version, so modifying or recompiling the alias starts over with an empty cache.
+ */
+public class AliasMemo {
+
+    private final List<Variable.Definition> arguments;
+    private final LinkedHashMap<List<Object>, Operator> values = new LinkedHashMap<>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Operator> eldest) {
+            return this.size() > ConfigOptions.ALIAS_PURE_CACHE_SIZE.val();
+        }
+
+    };
+    private long hits = 0;
+    private long misses = 0;
+
+    public AliasMemo(List<Variable.Definition> arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * @return the argument tuple of an execution, to look up or store its result with
+     */
+    public List<Object> key(CommandContext<ServerCommandSource> context) {
+        Object[] key = new Object[this.arguments.size()];
+        for (int i = 0; i < key.length; i++) {
+            Variable.Definition var = this.arguments.get(i);
+            key[i] = context.getArgument(var.name, var.type.clazz());
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * @return the value returned for the given arguments, or null if it isn't cached
+     */
+    public Operator get(List<Object> key) {
+        Operator value = this.values.get(key);
+        if (value != null) {
+            this.hits++;
+        }
+        else {
+            this.misses++;
+        }
+        return value;
+    }
+
+    public void put(List<Object> key, Operator value) {
+        if (ConfigOptions.ALIAS_PURE_CACHE_SIZE.val() > 0) {
+            this.values.put(key, value);
+        }
+    }
+
+    public void reset() {
+        this.values.clear();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+}
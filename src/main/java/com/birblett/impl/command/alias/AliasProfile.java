@@ -0,0 +1,61 @@
+package com.birblett.impl.command.alias;
+
+/**
+ * Execution statistics for a single compiled alias, only collected while profiling is enabled. Times are inclusive, so
+ * an alias or command instruction also counts the time spent in anything it runs, i.e. nested aliases.
+ */
+public class AliasProfile {
+
+    private long invocations = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private final long[] hits;
+    private final long[] nanos;
+
+    public AliasProfile(int instructions) {
+        this.hits = new long[instructions];
+        this.nanos = new long[instructions];
+    }
+
+    public void invocation(long nanos) {
+        this.invocations++;
+        this.totalNanos += nanos;
+        this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    public void instruction(int index, long nanos) {
+        this.hits[index]++;
+        this.nanos[index] += nanos;
+    }
+
+    public void reset() {
+        this.invocations = 0;
+        this.totalNanos = 0;
+        this.maxNanos = 0;
+        for (int i = 0; i < this.hits.length; i++) {
+            this.hits[i] = 0;
+            this.nanos[i] = 0;
+        }
+    }
+
+    public long getInvocations() {
+        return this.invocations;
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    public long getHits(int index) {
+        return this.hits[index];
+    }
+
+    public long getNanos(int index) {
+        return this.nanos[index];
+    }
+
+}
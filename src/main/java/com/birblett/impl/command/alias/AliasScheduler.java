@@ -0,0 +1,138 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.config.ConfigOptions;
+
+import java.util.ArrayDeque;
+
+/**
+ * Server-wide per-tick budget for alias execution. Interpreted aliases charge every instruction against the budget, and
+ * once it runs out the outermost running alias is paused and queued. Queued executions continue on the next tick in the
+ * order they were paused, each getting an even share of that tick's budget, and go to the back of the queue if they run
+ * out again. Nested aliases always run to completion, since pausing them would let their caller continue early.
+ * Generated bytecode can't be paused, so aliases are interpreted while a budget is set. The time budget only counts time
+ * actually spent running aliases, whenever during the tick that happens.
+ */
+public class AliasScheduler {
+
+    private record Deferred(SuspendedAlias execution, long since) {}
+
+    private static final ArrayDeque<Deferred> DEFERRED = new ArrayDeque<>();
+    // instructions left this tick, for the execution currently being resumed, and nanoseconds left this tick
+    private static long remaining = Long.MAX_VALUE;
+    private static long slice = Long.MAX_VALUE;
+    private static long time = Long.MAX_VALUE;
+    // when the outermost running alias started, and how many are running
+    private static long since = 0;
+    private static int running = 0;
+    private static long tick = 0;
+    private static long used = 0, lastUsed = 0, spent = 0, lastSpent = 0;
+    private static long deferrals = 0, resumed = 0, waited = 0, maxWaited = 0;
+
+    /**
+     * @return current server tick, as of the last {@link #startTick}
+     */
+    public static long tick() {
+        return tick;
+    }
+
+    public static boolean isEnabled() {
+        return ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.val() >= 0 || ConfigOptions.ALIAS_TICK_TIME_BUDGET.val() >= 0;
+    }
+
+    /**
+     * Charges a single instruction against the budget.
+     * @return false if the budget has run out
+     */
+    public static boolean charge() {
+        used++;
+        if (--remaining < 0 || --slice < 0) {
+            return false;
+        }
+        // only check the clock every so often
+        return (used & 63) != 0 || System.nanoTime() - since < time;
+    }
+
+    /**
+     * Starts timing an execution; only the outermost one is timed, since nested ones run inside it.
+     */
+    public static void begin() {
+        if (running++ == 0) {
+            since = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops timing an execution started with {@link #begin}, charging its time against the budget.
+     */
+    public static void end() {
+        if (--running == 0) {
+            long elapsed = System.nanoTime() - since;
+            time -= elapsed;
+            spent += elapsed;
+        }
+    }
+
+    /**
+     * Queues a paused execution to continue on a later tick.
+     */
+    public static void defer(SuspendedAlias execution) {
+        DEFERRED.add(new Deferred(execution, tick));
+        deferrals++;
+    }
+
+    /**
+     * Resets the budget for a new server tick; should be called before anything else runs aliases during the tick.
+     * @param ticks server tick count
+     */
+    public static void startTick(long ticks) {
+        tick = ticks;
+        lastUsed = used;
+        lastSpent = spent;
+        used = 0;
+        spent = 0;
+        int instructions = ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.val(), micros = ConfigOptions.ALIAS_TICK_TIME_BUDGET.val();
+        remaining = instructions < 0 ? Long.MAX_VALUE : instructions;
+        time = micros < 0 ? Long.MAX_VALUE : micros * 1000L;
+        slice = Long.MAX_VALUE;
+    }
+
+    /**
+     * Continues executions paused on earlier ticks, splitting what's left of the budget evenly between them.
+     */
+    public static void resumeDeferred() {
+        for (int n = DEFERRED.size(); n > 0 && !DEFERRED.isEmpty(); n--) {
+            Deferred deferred = DEFERRED.poll();
+            long ticks = tick - deferred.since;
+            resumed++;
+            waited += ticks;
+            maxWaited = Math.max(maxWaited, ticks);
+            slice = remaining == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(remaining / n, 1);
+            // the instruction limit still applies across ticks, otherwise runaway loops would never end
+            deferred.execution.alias().resume(deferred.execution, false);
+        }
+        slice = Long.MAX_VALUE;
+    }
+
+    /**
+     * @return a short summary of the budget and deferred executions, one entry per line
+     */
+    public static String[] report() {
+        int instructions = ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.val(), micros = ConfigOptions.ALIAS_TICK_TIME_BUDGET.val();
+        return new String[]{
+                "Budget: " + (instructions < 0 ? "unlimited" : instructions) + " instruction(s), " + (micros < 0 ? "unlimited" :
+                        micros + "µs") + " per tick",
+                "Instructions last tick: " + lastUsed + ", taking " + lastSpent / 1000 + "µs",
+                "Currently deferred: " + DEFERRED.size(),
+                "Deferred " + deferrals + " time(s), waiting " + (resumed == 0 ? 0 : String.format("%.1f", (double) waited /
+                        resumed)) + " tick(s) on average and " + maxWaited + " at most"
+        };
+    }
+
+    public static void resetStats() {
+        deferrals = 0;
+        resumed = 0;
+        waited = 0;
+        maxWaited = 0;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.birblett.impl.command.alias;
+
+import net.minecraft.scoreboard.*;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.HashMap;
+
+/**
+ * Direct scoreboard access for score() and [setscore], so reading or writing a score doesn't have to go through a
+ * /scoreboard command. Objectives are looked up by name on first use and cached until they're removed. Holders are player
+ * or fake player names, or @s for the entity running the alias.
+ */
+public class AliasScoreboard {
+
+    private static final HashMap<String, ScoreboardObjective> OBJECTIVES = new HashMap<>();
+    private static Scoreboard scoreboard = null;
+
+    private static ScoreboardObjective objective(Scoreboard scoreboard, String name) {
+        // a new scoreboard means a different server or world, so nothing cached is valid anymore
+        if (scoreboard != AliasScoreboard.scoreboard) {
+            OBJECTIVES.clear();
+            AliasScoreboard.scoreboard = scoreboard;
+        }
+        ScoreboardObjective objective = OBJECTIVES.get(name);
+        if (objective == null && (objective = scoreboard.getNullableObjective(name)) != null) {
+            OBJECTIVES.put(name, objective);
+        }
+        return objective;
+    }
+
+    private static ScoreHolder holder(ServerCommandSource source, String name) {
+        return "@s".equals(name) ? source.getEntity() : ScoreHolder.fromName(name);
+    }
+
+    /**
+     * Drops a removed objective from the cache.
+     */
+    public static void invalidate(ScoreboardObjective objective) {
+        OBJECTIVES.remove(objective.getName(), objective);
+    }
+
+    /**
+     * @return the holder's score, or 0 if it doesn't have one or the objective doesn't exist
+     */
+    public static long get(ServerCommandSource source, String holder, String objective) {
+        if (source == null) {
+            return 0;
+        }
+        Scoreboard scoreboard = source.getServer().getScoreboard();
+        ScoreboardObjective o = objective(scoreboard, objective);
+        ScoreHolder h = holder(source, holder);
+        if (o == null || h == null) {
+            return 0;
+        }
+        ReadableScoreboardScore score = scoreboard.getScore(h, o);
+        return score != null ? score.getScore() : 0;
+    }
+
+    /**
+     * Sets a score, creating it if needed.
+     * @return an error message, or null if the score was set
+     */
+    public static String set(ServerCommandSource source, String holder, String objective, int value) {
+        Scoreboard scoreboard = source.getServer().getScoreboard();
+        ScoreboardObjective o = objective(scoreboard, objective);
+        if (o == null) {
+            return "Unknown scoreboard objective '" + objective + "'";
+        }
+        if (o.getCriterion().isReadOnly()) {
+            return "Objective " + objective + " is read-only";
+        }
+        ScoreHolder h = holder(source, holder);
+        if (h == null) {
+            return "No entity to set a score for";
+        }
+        scoreboard.getOrCreateScore(h, o).setScore(value);
+        return null;
+    }
+
+}
@@ -3,23 +3,35 @@ package com.birblett.impl.command.alias;
 import com.birblett.TechnicalToolbox;
 import com.birblett.accessor.command.CommandSourceModifier;
 import com.birblett.accessor.command.delay.AliasedCommandSource;
+import com.birblett.accessor.command.delay.CommandScheduler;
 import com.birblett.impl.command.alias.language.AliasConstants;
+import com.birblett.impl.command.alias.language.BytecodeCompiler;
+import com.birblett.impl.command.alias.language.Frame;
 import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.command.alias.language.Optimizer;
 import com.birblett.impl.command.alias.language.Variable;
 import com.birblett.impl.config.ConfigOptions;
 import com.birblett.util.ServerUtil;
 import com.birblett.util.TextUtils;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.arguments.ArgumentType;
 import com.mojang.brigadier.builder.ArgumentBuilder;
-import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.context.ParsedArgument;
+import com.mojang.brigadier.context.StringRange;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import net.minecraft.command.CommandSource;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.text.MutableText;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.Util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -27,6 +39,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,11 +52,26 @@ public class AliasedCommand {
 
     private String alias;
     private final List<String> commands = new ArrayList<>();
-    private final List<Instruction> instructions = new ArrayList<>();
+    private volatile CompiledAlias compiled = null;
+    // registered without compiling; compiled on first execution
+    private boolean pending = false;
+    // while loading off-thread, errors are collected here and logged in order afterward
+    private List<String> errorLog = null;
+    private Path cacheFile = null;
     private final LinkedHashMap<String, Variable.Definition> argumentDefinitions = new LinkedHashMap<>();
+    // arguments as currently registered to the dispatcher, for binding direct calls from other aliases
+    private Variable.Definition[] registeredArguments = null;
+    private ArgumentType<?>[] registeredTypes = null;
     private int permission;
     private boolean silent;
+    // results only depend on arguments, so they're memoized
+    private boolean pure = false;
     public final boolean global;
+    /**
+     * A compile error, collected by whoever started the compile so it can decide where it goes.
+     */
+    private record CompileError(int line, String err) {}
+
     private static final Pattern SAVED_ARGS = Pattern.compile("\\{\\$[^:]+(:[^}]+)?}");
     private static final Pattern STATEMENT = Pattern.compile("\\[.*]");
     private static final Pattern STATEMENT_BEGIN = Pattern.compile("\\[[^ ]+");
@@ -59,8 +87,10 @@ public class AliasedCommand {
         this.register(dispatcher);
     }
 
-    private AliasedCommand(String alias, int permission, boolean silent, Collection<String> commands, Collection<Variable.Definition> arguments, boolean global) {
+    private AliasedCommand(String alias, int permission, boolean silent, boolean pure, Collection<String> commands,
+                           Collection<Variable.Definition> arguments, boolean global, List<String> errors) {
         this.global = global;
+        this.errorLog = errors;
         this.alias = alias;
         this.commands.addAll(commands);
         List<String> args = new ArrayList<>();
@@ -73,11 +103,11 @@ public class AliasedCommand {
             }
         }
         if (!args.isEmpty()) {
-            TechnicalToolbox.error("{}: couldn't parse argument(s) {}", alias, args);
+            errors.add(alias + ": couldn't parse argument(s) " + args);
         }
         this.permission = permission;
         this.silent = silent;
-        AliasManager.ALIASES.put(this.alias, this);
+        this.pure = pure;
     }
 
     public String getAlias() {
@@ -96,24 +126,82 @@ public class AliasedCommand {
         this.silent = silent;
     }
 
+    /**
+     * Sets whether the alias is pure; takes effect once it's recompiled, which also clears its cached results.
+     */
+    public void setPure(boolean pure) {
+        this.pure = pure;
+    }
+
+    public boolean isPure() {
+        return this.pure;
+    }
+
     public List<String> getCommands() {
         return this.commands;
     }
 
     /**
-     * Attempts to compile the currently stored alias; control flow/assignment are formatted as
-     * [statement], everything else that does not match the regex will be interpreted as a command
+     * Attempts to compile the currently stored alias and publishes the result if successful.
      * @return false if it fails to compile
      */
     private boolean compile() {
-        this.instructions.clear();
+        boolean generate = ConfigOptions.ALIAS_BYTECODE_COMPILATION.val();
+        Path file = ConfigOptions.ALIAS_COMPILE_CACHE.val() ? this.cacheFile : null;
+        byte[] hash = file != null ? AliasCache.hash(this.commands, this.argumentDefinitions.values(), ConfigOptions
+                .ALIAS_OPTIMIZATION.val(), this.pure) : null;
+        CompiledAlias compiled = AliasCache.read(file, hash, this, this.argumentDefinitions.values(), generate);
+        if (compiled == null) {
+            List<CompileError> errors = new ArrayList<>();
+            compiled = this.build(this.commands, this.argumentDefinitions, generate, errors);
+            if (compiled == null) {
+                for (CompileError error : errors) {
+                    this.logError(error);
+                    this.status = "Line " + error.line + ": " + error.err;
+                }
+                return false;
+            }
+            // compiled instructions never change, so this can safely happen in the background
+            if (file != null && hash != null) {
+                CompiledAlias result = compiled;
+                CompletableFuture.runAsync(() -> AliasCache.write(file, hash, result), Util.getMainWorkerExecutor());
+            }
+        }
+        this.compiled = compiled;
+        this.pending = false;
+        return true;
+    }
+
+    /**
+     * Compiles an alias script; control flow/assignment are formatted as [statement], everything else that does not
+     * match the regex will be interpreted as a command. Only reads the given script and arguments, so it's safe to call
+     * off-thread on copies of them.
+     * @param commands script lines
+     * @param arguments argument definitions, in order
+     * @param generate whether to try generating bytecode
+     * @param errors collects compile errors
+     * @return the compiled alias, or null if it fails to compile
+     */
+    private CompiledAlias build(List<String> commands, LinkedHashMap<String, Variable.Definition> arguments, boolean generate,
+                                List<CompileError> errors) {
+        boolean pure = this.pure;
+        if (pure) {
+            // results are cached by argument values, which have to be comparable
+            for (Variable.Definition var : arguments.values()) {
+                if (!AliasConstants.TYPE_MAP.containsKey(var.type.clazz())) {
+                    return AliasedCommand.compileError(errors, -1, "pure aliases can't take " + var.typeName + " arguments");
+                }
+            }
+        }
+        List<Instruction> instructions = new ArrayList<>();
         Stack<Instruction> controlFlowStack = new Stack<>();
         List<LinkedHashMap<String, Variable.Definition>> scope = new ArrayList<>();
-        scope.add(new LinkedHashMap<>(this.argumentDefinitions));
+        scope.add(new LinkedHashMap<>(arguments));
         int address = 0, depth = 0;
-        for (int i = 0; i < this.commands.size(); i++) {
-            String s = this.commands.get(i);
+        for (int i = 0; i < commands.size(); i++) {
+            String s = commands.get(i);
             if (!s.isEmpty()) {
+                int start = instructions.size();
                 String cmd = s.strip(), c;
                 Matcher m = STATEMENT.matcher(cmd);
                 if (m.find() && (c = m.group()).equals(s.strip())) {
@@ -130,13 +218,13 @@ public class AliasedCommand {
                                 String[] instr = c.substring(1, c.length() - 1).replaceFirst("let", "").strip()
                                         .split("=", 2);
                                 if (instr.length != 2) {
-                                    return this.compileError(i, "assignment must be of form [let var = (expression)]");
+                                    return AliasedCommand.compileError(errors, i, "assignment must be of form [let var = (expression)]");
                                 }
                                 Instruction.Let e = new Instruction.Let(instr[0].strip(), instr[1], scope);
                                 if (!e.valid) {
-                                    return this.compileError(i, e.err);
+                                    return AliasedCommand.compileError(errors, i, e.err);
                                 }
-                                this.instructions.add(e);
+                                instructions.add(e);
                             }
                             // tests a condition; if it fails jump to the next elif/else
                             case "if" -> {
@@ -145,9 +233,9 @@ public class AliasedCommand {
                                 String instr =  c.substring(1, c.length() - 1).replaceFirst("if", "").strip();
                                 Instruction.If instruction = new Instruction.If(instr, scope);
                                 if (!instruction.valid) {
-                                    return this.compileError(i, instruction.err);
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
                                 }
-                                this.instructions.add(instruction);
+                                instructions.add(instruction);
                                 controlFlowStack.add(instruction);
                             }
                             // sets previous if/elif conditional jump to the current address and creates an IfJump instruction, which will
@@ -158,20 +246,20 @@ public class AliasedCommand {
                                     instruction.jumpTo = ++address;
                                     controlFlowStack.pop();
                                     Instruction jumpInstruction = new Instruction.IfJump(-1, depth);
-                                    this.instructions.add(jumpInstruction);
+                                    instructions.add(jumpInstruction);
                                     controlFlowStack.add(jumpInstruction);
                                     String instr =  c.substring(1, c.length() - 1).replaceFirst("elif", "").strip();
                                     Instruction.If newInstruction = new Instruction.If(instr, scope);
                                     if (!newInstruction.valid) {
-                                        return this.compileError(i, newInstruction.err);
+                                        return AliasedCommand.compileError(errors, i, newInstruction.err);
                                     }
-                                    this.instructions.add(newInstruction);
+                                    instructions.add(newInstruction);
                                     controlFlowStack.add(newInstruction);
                                     scope.removeLast();
                                     scope.add(new LinkedHashMap<>());
                                 }
                                 else {
-                                    return this.compileError(i, "[elif] must follow an [if/elif]");
+                                    return AliasedCommand.compileError(errors, i, "[elif] must follow an [if/elif]");
                                 }
                             }
                             // strictly speaking this does not need an explicit instruction but i was lazy and didn't want to do extra
@@ -182,13 +270,13 @@ public class AliasedCommand {
                                     instruction.jumpTo = address + 1;
                                     controlFlowStack.pop();
                                     Instruction newInstruction = new Instruction.Jump(address);
-                                    this.instructions.add(newInstruction);
+                                    instructions.add(newInstruction);
                                     controlFlowStack.add(newInstruction);
                                     scope.removeLast();
                                     scope.add(new LinkedHashMap<>());
                                 }
                                 else {
-                                    return this.compileError(i, "{} - line {}: [else] must follow an [if/elif]");
+                                    return AliasedCommand.compileError(errors, i, "{} - line {}: [else] must follow an [if/elif]");
                                 }
                             }
                             // basically identical to if i actually haven't tested this and have no idea if it works or not
@@ -198,20 +286,89 @@ public class AliasedCommand {
                                 String instr =  c.substring(1, c.length() - 1).replaceFirst("while", "").strip();
                                 Instruction.While instruction = new Instruction.While(address, instr, scope);
                                 if (!instruction.valid) {
-                                    return this.compileError(i, instruction.err);
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
                                 }
-                                this.instructions.add(instruction);
+                                instructions.add(instruction);
                                 controlFlowStack.add(instruction);
                             }
+                            // [foreach] resets its position first, so the loop itself starts on the next address and [end] jumps
+                            // back to it like a [while]
+                            case "foreach" -> {
+                                depth++;
+                                scope.add(new LinkedHashMap<>());
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("foreach", "").strip();
+                                Instruction.ForEach instruction = new Instruction.ForEach(address + 1, instr, scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction.reset());
+                                instructions.add(instruction);
+                                controlFlowStack.add(instruction);
+                                address++;
+                            }
+                            // [for] evaluates its bounds once and is closed by a ForNext at [end], which steps the counter and jumps
+                            // back to the start of the body
+                            case "for" -> {
+                                depth++;
+                                scope.add(new LinkedHashMap<>());
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("for", "").strip();
+                                Instruction.For instruction = new Instruction.For(address, instr, scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction);
+                                controlFlowStack.add(instruction);
+                            }
+                            // [switch] only records the expression; its cases fill in the jump table as they're compiled
+                            case "switch" -> {
+                                depth++;
+                                scope.add(new LinkedHashMap<>());
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("switch", "").strip();
+                                Instruction.Switch instruction = new Instruction.Switch(instr, scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction);
+                                controlFlowStack.add(instruction);
+                            }
+                            // each [case/default] starts with a jump to the end of the switch, which ends the previous case. for the
+                            // first case this is never reached
+                            case "case", "default" -> {
+                                if (!controlFlowStack.isEmpty() && controlFlowStack.peek() instanceof Instruction.Switch instruction) {
+                                    Instruction.Jump jumpInstruction = new Instruction.Jump(-1);
+                                    Instruction.Jump previous = instruction.hasCases() ? jumpInstruction : null;
+                                    boolean added = "case".equals(ctrl) ? instruction.addCase(c.substring(1, c.length() - 1)
+                                            .replaceFirst("case", "").strip(), previous, address + 1) :
+                                            instruction.addDefault(previous, address + 1);
+                                    if (!added) {
+                                        return AliasedCommand.compileError(errors, i, instruction.err);
+                                    }
+                                    instructions.add(jumpInstruction);
+                                    scope.removeLast();
+                                    scope.add(new LinkedHashMap<>());
+                                }
+                                else {
+                                    return AliasedCommand.compileError(errors, i, "[" + ctrl + "] must be directly inside a [switch]");
+                                }
+                            }
                             // [end] handles all control flow so compilation depends on whatever happens to be on the stack
                             case "end" -> {
                                 depth--;
                                 scope.removeLast();
                                 if (controlFlowStack.isEmpty()) {
-                                    return this.compileError(i, "[end] does not enclose any control block");
+                                    return AliasedCommand.compileError(errors, i, "[end] does not enclose any control block");
+                                }
+                                else if (controlFlowStack.peek() instanceof Instruction.Switch instruction) {
+                                    instruction.close(address--);
+                                    controlFlowStack.pop();
+                                }
+                                else if (controlFlowStack.peek() instanceof Instruction.For instruction) {
+                                    instructions.add(instruction.next());
+                                    instruction.jumpTo = address + 1;
+                                    controlFlowStack.pop();
                                 }
                                 else if (controlFlowStack.peek() instanceof Instruction.While instruction) {
-                                    this.instructions.add(new Instruction.Jump(instruction.startAddress));
+                                    instructions.add(new Instruction.Jump(instruction.startAddress));
                                     instruction.jumpTo = address + 1;
                                     controlFlowStack.pop();
                                 }
@@ -227,7 +384,7 @@ public class AliasedCommand {
                                 }
                                 else {
                                     // is this even reachable i have no idea
-                                    return false;
+                                    return null;
                                 }
                             }
                             // [return] causes the program to terminate immediately and if specified can return a value accessed via [fetch]
@@ -235,9 +392,40 @@ public class AliasedCommand {
                                 String instr =  c.substring(1, c.length() - 1).replaceFirst("return", "").strip();
                                 Instruction.Return instruction = new Instruction.Return(instr, scope);
                                 if (!instruction.valid) {
-                                    return this.compileError(i, instruction.err);
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction);
+                            }
+                            // [wait] suspends the alias, resuming from the next instruction after some number of ticks
+                            case "wait" -> {
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("wait", "").strip();
+                                Instruction.Wait instruction = new Instruction.Wait(instr, scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
                                 }
-                                this.instructions.add(instruction);
+                                instructions.add(instruction);
+                            }
+                            // [setscore] writes a score directly, without going through /scoreboard
+                            case "setscore" -> {
+                                String[] instr = c.substring(1, c.length() - 1).replaceFirst("setscore", "").strip()
+                                        .split("=", 2);
+                                if (instr.length != 2) {
+                                    return AliasedCommand.compileError(errors, i, "setscore must be of form [setscore holder, objective = value]");
+                                }
+                                Instruction.SetScore instruction = new Instruction.SetScore(instr[0], instr[1], scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction);
+                            }
+                            // [call] runs another alias directly and assigns what it returns
+                            case "call" -> {
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("call", "").strip();
+                                Instruction.Invoke instruction = new Instruction.Invoke(instr, scope);
+                                if (!instruction.valid) {
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
+                                }
+                                instructions.add(instruction);
                             }
                             // [fetch] retrieves the last return value in scope. there is no type inference for return values so it must be
                             // cast. attempting to cast a string as any number will set it to 0.
@@ -245,30 +433,60 @@ public class AliasedCommand {
                                 String[] instr =  c.substring(1, c.length() - 1).replaceFirst("fetch", "").strip()
                                         .split(" ");
                                 if (instr.length != 2) {
-                                    return this.compileError(i, "fetch should be of form [fetch type <var>]");
+                                    return AliasedCommand.compileError(errors, i, "fetch should be of form [fetch type <var>]");
                                 }
                                 Instruction.Fetch instruction = new Instruction.Fetch(instr[0], instr[1], scope);
                                 if (!instruction.valid) {
-                                    return this.compileError(i, instruction.err);
+                                    return AliasedCommand.compileError(errors, i, instruction.err);
                                 }
-                                this.instructions.add(instruction);
+                                instructions.add(instruction);
                             }
                             default -> {
-                                return this.compileError(i, "invalid statement [" + ctrl +"]");
+                                return AliasedCommand.compileError(errors, i, "invalid statement [" + ctrl +"]");
                             }
                         }
                     }
                 }
                 else {
-                    this.instructions.add(new Instruction.Command(cmd));
+                    // entities render as names, which commands can't parse back into the same selection
+                    Matcher placeholders = AliasConstants.PLACEHOLDER.matcher(cmd);
+                    while (placeholders.find()) {
+                        String name = placeholders.group(1);
+                        for (int j = scope.size() - 1; j >= 0; j--) {
+                            Variable.Definition def = scope.get(j).get(name);
+                            if (def != null) {
+                                if ("entities".equals(def.typeName)) {
+                                    return AliasedCommand.compileError(errors, i, "entities argument " + name + " can't be " +
+                                            "used in commands, use [foreach <var> in " + name + "] instead");
+                                }
+                                break;
+                            }
+                        }
+                    }
+                    instructions.add(new Instruction.Command(cmd));
+                }
+                for (int j = start; pure && j < instructions.size(); j++) {
+                    String err = Instruction.impurity(instructions.get(j), this.alias);
+                    if (err != null) {
+                        return AliasedCommand.compileError(errors, i, err);
+                    }
                 }
                 address++;
             }
         }
         while (!controlFlowStack.isEmpty()) {
             scope.removeLast();
-            if (controlFlowStack.peek() instanceof Instruction.While instruction) {
-                this.instructions.add(new Instruction.Jump(instruction.startAddress));
+            if (controlFlowStack.peek() instanceof Instruction.Switch instruction) {
+                instruction.close(address--);
+                controlFlowStack.pop();
+            }
+            else if (controlFlowStack.peek() instanceof Instruction.For instruction) {
+                instructions.add(instruction.next());
+                instruction.jumpTo = address + 1;
+                controlFlowStack.pop();
+            }
+            else if (controlFlowStack.peek() instanceof Instruction.While instruction) {
+                instructions.add(new Instruction.Jump(instruction.startAddress));
                 instruction.jumpTo = address + 1;
                 controlFlowStack.pop();
             }
@@ -281,29 +499,103 @@ public class AliasedCommand {
                 }
             }
             else {
-                return false;
+                return null;
             }
             address++;
         }
+        Optimizer optimizer = null;
+        if (ConfigOptions.ALIAS_OPTIMIZATION.val()) {
+            optimizer = Optimizer.optimize(instructions, arguments.keySet());
+        }
+        AliasedCommand.bindCalls(instructions, this.alias);
+        // arguments take the first slots, everything else is laid out in order of first appearance
+        LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+        for (String name : arguments.keySet()) {
+            slots.put(name, slots.size());
+        }
+        for (Instruction instruction : instructions) {
+            instruction.link(slots);
+        }
+        BytecodeCompiler.CompiledProgram program = null;
+        if (generate) {
+            program = BytecodeCompiler.compile(this, instructions, arguments.values(), slots);
+        }
+        // built all at once, so executions already running keep the version they started with
         /*
         TechnicalToolbox.log("/{} compiled", this.alias);
-        for (int i = 0; i < this.instructions.size(); i++) {
-            TechnicalToolbox.log("{}: {}", i, this.instructions.get(i));
+        for (int i = 0; i < instructions.size(); i++) {
+            TechnicalToolbox.log("{}: {}", i, instructions.get(i));
         }
         */
+        return new CompiledAlias(instructions, slots, arguments.values(), program, optimizer != null ? optimizer.report() : null,
+                pure);
+    }
+
+    /**
+     * Compiles a freshly loaded alias before it's published anywhere, so it can run on a worker thread. Errors go to the
+     * log list it was read with.
+     * @return false if it fails to compile
+     */
+    boolean precompile() {
+        if (!this.compile()) {
+            return false;
+        }
+        this.status = "Compiled successfully";
         return true;
     }
 
     /**
-     * Logs an error and stores an error message.
+     * Sets where this alias' compiled form is cached on disk, see {@link AliasCache}.
+     */
+    public void setCacheFile(Path file) {
+        this.cacheFile = file;
+    }
+
+    /**
+     * Stops collecting errors once the alias has been loaded; anything after this is logged directly.
+     */
+    void finishLoading() {
+        this.errorLog = null;
+    }
+
+    /**
+     * Checks whether the alias compiles without publishing anything, logging any errors. Works on copies of the script
+     * and doesn't touch the alias' state, so it can run off-thread.
+     * @return whether the alias compiled successfully
+     */
+    public boolean validate(List<String> commands, LinkedHashMap<String, Variable.Definition> arguments) {
+        List<CompileError> errors = new ArrayList<>();
+        if (this.build(commands, arguments, false, errors) != null) {
+            return true;
+        }
+        for (CompileError error : errors) {
+            TechnicalToolbox.error("Failed to compile /{} - line {}: {}", this.alias, error.line + 1, error.err);
+        }
+        return false;
+    }
+
+    /**
+     * Records a compile error.
+     * @param errors error sink of the current compile
      * @param line line number
      * @param err specific error mesasge
-     * @return always false, inlined when compiler fails
+     * @return always null, inlined when compiler fails
      */
-    private boolean compileError(int line, String err) {
-        TechnicalToolbox.error("Failed to compile /{} - line {}: {}", this.alias, line + 1, err);
-        this.status = "Line " + line + ": " + err;
-        return false;
+    private static CompiledAlias compileError(List<CompileError> errors, int line, String err) {
+        errors.add(new CompileError(line, err));
+        return null;
+    }
+
+    /**
+     * Logs a compile error, to the load log if the alias is still being loaded.
+     */
+    private void logError(CompileError error) {
+        if (this.errorLog != null) {
+            this.errorLog.add("Failed to compile /" + this.alias + " - line " + (error.line + 1) + ": " + error.err);
+        }
+        else {
+            TechnicalToolbox.error("Failed to compile /{} - line {}: {}", this.alias, error.line + 1, error.err);
+        }
     }
 
     /**
@@ -326,55 +618,56 @@ public class AliasedCommand {
      * @return true if successful, false if compilation failed
      */
     public boolean register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        return this.register(dispatcher, false);
+    }
+
+    /**
+     * Registers the alias as an executable command, compiling it first unless lazy. Lazily registered aliases are built
+     * from their name, permission and arguments alone, and compiled on first execution.
+     * @param dispatcher dispatcher to register to
+     * @param lazy whether to defer compilation
+     * @return true if successful, false if compilation failed
+     */
+    public boolean register(CommandDispatcher<ServerCommandSource> dispatcher, boolean lazy) {
         if (!AliasManager.ALIASES.containsKey(this.alias)) {
             AliasManager.ALIASES.put(this.alias, this);
         }
+        if (lazy) {
+            if (this.compiled == null) {
+                this.pending = true;
+                this.status = "Not compiled yet";
+            }
+        }
         // Compile first, if compilation fails then it does nothing
-        if (!this.compile()) {
+        else if (!this.compile()) {
             return false;
         }
-        this.status = "Compiled successfully";
-        List<ArgumentBuilder<ServerCommandSource, ?>> tree = new ArrayList<>();
+        else {
+            this.status = "Compiled successfully";
+        }
+        CommandParseCache.invalidate();
+        Variable.Definition[] vars = this.argumentDefinitions.values().toArray(new Variable.Definition[0]);
+        ArgumentType<?>[] types = new ArgumentType<?>[vars.length];
         // Execution with required arguments
         if (!this.argumentDefinitions.isEmpty()) {
-            // the horror
-            Variable.Definition[] vars = this.argumentDefinitions.values().toArray(new Variable.Definition[0]);
+            ArgumentBuilder<ServerCommandSource, ?> tree = null;
             for (int i = vars.length - 1; i >= 0; i--) {
                 Variable.Definition def = vars[i];
-                List<ArgumentBuilder<ServerCommandSource, ?>> baseNodes = new ArrayList<>();
-                // selection adds each option as its own literal, needs to modify command source to preserve arguments
+                types[i] = def.getArgumentType();
+                RequiredArgumentBuilder<ServerCommandSource, ?> node = CommandManager.argument(def.name, types[i]);
+                // selection is a single string argument suggesting its options, so the tree stays one node per argument;
+                // the option itself is checked on execution
                 if ("selection".equals(def.typeName)) {
-                    for (String s : def.args) {
-                        baseNodes.add(CommandManager.literal(s).requires(source -> {
-                            ((CommandSourceModifier) source).technicalToolbox$addSelector(def.name, s);
-                            return true;
-                        }));
-                    }
-                }
-                else {
-                    baseNodes.add(CommandManager.argument(def.name, def.getArgumentType()));
-                }
-                // build command tree by layer, from the bottom up
-                if (tree.isEmpty()) {
-                    for (ArgumentBuilder<ServerCommandSource, ?> base : baseNodes) {
-                        tree.add(base.executes(this::execute));
-                    }
-                }
-                else {
-                    for (ArgumentBuilder<ServerCommandSource, ?> base : baseNodes) {
-                        for (ArgumentBuilder<ServerCommandSource, ?> treeNode : tree) {
-                            base = base.then(treeNode);
-                        }
-                    }
-                    tree = baseNodes;
+                    List<String> options = Arrays.stream(def.args).map(StringArgumentType::escapeIfRequired).toList();
+                    node.suggests((context, builder) -> CommandSource.suggestMatching(options, builder));
                 }
+                // build the chain from the bottom up
+                tree = tree == null ? node.executes(this::execute) : node.then(tree);
             }
-            LiteralArgumentBuilder<ServerCommandSource> root = CommandManager.literal(this.alias)
-                            .requires(source -> source.hasPermissionLevel(this.getPermission()));
-            for (ArgumentBuilder<ServerCommandSource, ?> base : tree) {
-                root = root.then(base);
-            }
-            dispatcher.register(root.executes(this::getCommandInfo));
+            dispatcher.register(CommandManager.literal(this.alias)
+                    .requires(source -> source.hasPermissionLevel(this.getPermission()))
+                    .then(tree)
+                    .executes(this::getCommandInfo));
         }
         // Execution if no arg provided
         else {
@@ -382,6 +675,9 @@ public class AliasedCommand {
                     .requires(source -> source.hasPermissionLevel(this.getPermission())))
                     .executes(this::execute));
         }
+        this.registeredArguments = vars;
+        this.registeredTypes = types;
+        AliasManager.setCallable(this.alias, true);
         return true;
     }
 
@@ -391,64 +687,450 @@ public class AliasedCommand {
      */
     public void deregister(MinecraftServer server, boolean hard) {
         ServerUtil.removeCommandByName(server, this.alias);
+        AliasManager.setCallable(this.alias, false);
+        this.registeredArguments = null;
+        this.registeredTypes = null;
         if (hard) {
             AliasManager.ALIASES.remove(this.alias);
         }
     }
 
     /**
-     * Executes an alias from start to finish. Configured to interpret {@link Instruction}.
+     * Turns command lines that run a callable alias into direct calls, and calls to aliases that are no longer callable
+     * back into commands. Arguments are only bound when the call runs, so callees can change their arguments without
+     * their callers being rebound.
+     * Calls to the alias itself with nothing left to run after them are marked as tail calls, see
+     * {@link Instruction.TailCall#bind}.
+     * @param instructions instructions to rebind in place, before linking
+     * @param self name of the alias the instructions belong to
+     * @return whether anything changed
+     */
+    static boolean bindCalls(List<Instruction> instructions, String self) {
+        boolean changed = false;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof Instruction.Command command) {
+                String callee = Instruction.Call.callee(command.command());
+                boolean callable = callee != null && AliasManager.isCallable(callee);
+                if (callable != command instanceof Instruction.Call) {
+                    instructions.set(i, callable ? new Instruction.Call(command.command(), callee) :
+                            new Instruction.Command(command.command()));
+                    changed = true;
+                }
+            }
+        }
+        return Instruction.TailCall.bind(instructions, self) || changed;
+    }
+
+    /**
+     * Publishes a version of the current compiled alias with its calls rebound, after an alias it runs is registered.
+     */
+    void rebind() {
+        CompiledAlias compiled = this.compiled;
+        if (compiled != null && (compiled = compiled.rebind(this)) != null) {
+            this.compiled = compiled;
+        }
+    }
+
+    /**
+     * Parses the arguments of a line calling this alias the same way the dispatcher would.
+     * @param command full command line
+     * @param start index just after the alias name
+     * @return parsed arguments by name, or null if this alias isn't registered or the line doesn't match its arguments
+     */
+    private Map<String, ParsedArgument<ServerCommandSource, ?>> bindArguments(String command, int start) {
+        Variable.Definition[] vars = this.registeredArguments;
+        ArgumentType<?>[] types = this.registeredTypes;
+        if (vars == null) {
+            return null;
+        }
+        Map<String, ParsedArgument<ServerCommandSource, ?>> arguments = new HashMap<>();
+        StringReader reader = new StringReader(command);
+        reader.setCursor(start);
+        try {
+            for (int i = 0; i < vars.length; i++) {
+                if (!reader.canRead() || reader.peek() != ' ') {
+                    return null;
+                }
+                reader.skip();
+                int begin = reader.getCursor();
+                Object value = types[i].parse(reader);
+                arguments.put(vars[i].name, new ParsedArgument<>(begin, reader.getCursor(), value));
+            }
+        }
+        catch (CommandSyntaxException e) {
+            return null;
+        }
+        return reader.canRead() ? null : arguments;
+    }
+
+    /**
+     * Executes an alias from the start. Runs the generated program if there is one, otherwise interprets
+     * {@link Instruction}.
      * @param context command context
      */
     private int execute(CommandContext<ServerCommandSource> context) {
-        LinkedHashMap<String, Variable> variableDefinitions = new LinkedHashMap<>();
-        List<Instruction> instructions = List.copyOf(this.instructions);
+        return this.execute(context, null);
+    }
+
+    /**
+     * @param result receives the return value instead of the source when run by a [call], may be null
+     */
+    private int execute(CommandContext<ServerCommandSource> context, Operator[] result) {
+        CallStack.Entry entry = this.prepare(context);
+        if (entry == null) {
+            return 0;
+        }
+        entry.frame.result = result;
+        if (entry.compiled.recall(entry.frame)) {
+            return 1;
+        }
+        return this.run(entry);
+    }
+
+    /**
+     * Checks selection arguments, compiles the alias if it hasn't been yet, and sets up a frame for a new execution.
+     * @return the execution to run, or null if it can't run after sending an error
+     */
+    private CallStack.Entry prepare(CommandContext<ServerCommandSource> context) {
+        if (!this.checkSelections(context)) {
+            return null;
+        }
+        CompiledAlias compiled = this.compiled;
+        if (compiled == null) {
+            if (!this.pending || !this.compile()) {
+                this.pending = false;
+                context.getSource().sendError(TextUtils.formattable("Failed to compile /" + this.alias + ": " + this.status));
+                return null;
+            }
+            this.status = "Compiled successfully";
+            compiled = this.compiled;
+        }
+        try {
+            return new CallStack.Entry(this, compiled, context, compiled.acquireFrame(context), 0);
+        }
+        catch (CommandSyntaxException e) {
+            context.getSource().sendError(TextUtils.formattable(e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Runs a prepared execution to completion, as part of the call chain currently running if there is one.
+     */
+    private int run(CallStack.Entry entry) {
+        CallStack chain = CallStack.enter();
+        AliasScheduler.begin();
+        try {
+            if (ConfigOptions.ALIAS_PROFILING.val()) {
+                return this.interpretProfiled(entry.context, entry.compiled, entry.frame, entry.pc);
+            }
+            // generated programs can't be paused, so they only run without a tick budget
+            if (entry.compiled.program != null && !AliasScheduler.isEnabled()) {
+                try {
+                    return entry.compiled.program.run(this, entry.context, entry.frame);
+                }
+                finally {
+                    entry.compiled.releaseFrame(entry.frame);
+                }
+            }
+            return this.interpret(entry);
+        }
+        finally {
+            AliasScheduler.end();
+            chain.exit();
+        }
+    }
+
+    /**
+     * Starts an execution for a direct call made by the interpreter. Executions that would be interpreted as well are
+     * pushed onto the current {@link CallStack} for the interpreter loop running the caller to pick up, so recursion
+     * doesn't nest Java calls; anything else runs to completion here.
+     * @param invoke [call] that receives the result, or null
+     * @param caller frame of the calling execution
+     * @return -4 if the execution was pushed, otherwise -1
+     */
+    private int enter(CommandContext<ServerCommandSource> context, Instruction.Invoke invoke, Frame caller) {
+        Operator[] result = invoke != null ? new Operator[1] : null;
+        CallStack.Entry entry = this.prepare(context);
+        if (entry != null) {
+            entry.frame.result = result;
+            // pure aliases with a cached result return it without running
+            if (!entry.compiled.recall(entry.frame)) {
+                if (entry.compiled.program == null || AliasScheduler.isEnabled()) {
+                    entry.invoke = invoke;
+                    entry.result = result;
+                    CallStack.current().call(entry);
+                    return -4;
+                }
+                this.run(entry);
+            }
+        }
+        if (invoke != null) {
+            invoke.assign(caller, result[0]);
+        }
+        return -1;
+    }
+
+    /**
+     * Interprets instructions until an execution finishes or suspends. Direct calls to other interpreted executions are
+     * run by this same loop: the caller waits on the {@link CallStack} while its callee runs, and continues once the
+     * callee finishes. Frames go back to the pool unless their execution suspended, in which case they're kept for
+     * resumption.
+     * @param start execution to run, from its current instruction index
+     */
+    private int interpret(CallStack.Entry start) {
+        CallStack chain = CallStack.current();
+        // executions already waiting belong to outer loops
+        int base = chain.waiting();
+        boolean budgeted = AliasScheduler.isEnabled();
+        CallStack.Entry entry = start;
+        try {
+            run:
+            while (true) {
+                AliasedCommand alias = entry.alias;
+                CommandContext<ServerCommandSource> context = entry.context;
+                AliasedCommandSource source = (AliasedCommandSource) context.getSource();
+                List<Instruction> instructions = entry.compiled.instructions;
+                Frame frame = entry.frame;
+                boolean suspended = false;
+                int status = -1, i;
+                // instructions are counted locally like generated programs do, and only added to the source before
+                // anything that could run other aliases and once this stops
+                long left = BytecodeCompiler.remaining(context), mark = left;
+                // main loop for running instructions; opcode of -4 is a pushed call, -3 is wait, -2 is return, -1 is
+                // donothing, >=0 is an instruction index to jump to
+                for (i = entry.pc; i < instructions.size() && left > 0 && !chain.exceeded(); i++) {
+                    // out of budget for this tick, pause here if this is the outermost alias
+                    if (budgeted && !AliasScheduler.charge() && chain.depth() == 1) {
+                        suspended = true;
+                        status = alias.defer(context, entry.compiled, frame, i);
+                        break;
+                    }
+                    Instruction instruction = instructions.get(i);
+                    left--;
+                    boolean calls = instruction instanceof Instruction.Command || instruction instanceof Instruction.Invoke;
+                    if (calls) {
+                        source.technicalToolbox$AddToInstructionCount((int) (mark - left));
+                    }
+                    int out = instruction.step(alias, context, frame);
+                    if (calls) {
+                        left = mark = BytecodeCompiler.remaining(context);
+                    }
+                    if (out == -4) {
+                        entry.pc = i + 1;
+                        entry = chain.take(entry);
+                        continue run;
+                    }
+                    else if (out == -3) {
+                        suspended = true;
+                        status = alias.suspend(context, entry.compiled, frame, i);
+                        break;
+                    }
+                    else if (out == -2) {
+                        status = 0;
+                        break;
+                    }
+                    else if (out >= 0) {
+                        i = out - 1;
+                    }
+                }
+                source.technicalToolbox$AddToInstructionCount((int) (mark - left));
+                if (status == -1) {
+                    status = alias.finish(context, i >= instructions.size());
+                }
+                if (!suspended) {
+                    entry.compiled.releaseFrame(frame);
+                }
+                if (chain.waiting() == base) {
+                    return status;
+                }
+                // hand the result back to the caller and continue it
+                CallStack.Entry callee = entry;
+                entry = chain.pop();
+                if (callee.invoke != null) {
+                    callee.invoke.assign(entry.frame, callee.result[0]);
+                }
+            }
+        }
+        finally {
+            // only left early by an exception, in which case calls this loop pushed are dropped so the chain can end
+            while (chain.waiting() > base) {
+                chain.pop();
+            }
+        }
+    }
+
+    /**
+     * Same as {@link AliasedCommand#interpret}, but also times each instruction individually. Direct calls run nested
+     * instead, so each execution's time includes its callees'.
+     */
+    private int interpretProfiled(CommandContext<ServerCommandSource> context, CompiledAlias compiled, Frame frame, int start) {
+        long begin = System.nanoTime();
+        CallStack chain = CallStack.current();
         AliasedCommandSource source = (AliasedCommandSource) context.getSource();
-        source.technicalToolbox$AddToRecursionDepth(1);
-        // load arguments locally
-        for (Variable.Definition var : this.argumentDefinitions.values()) {
-            if ("selection".equals(var.typeName)) {
-                String arg = ((CommandSourceModifier) context.getSource()).technicalToolbox$getSelectorArgument(var.name);
-                variableDefinitions.put(var.name, new Variable(var, arg));
+        List<Instruction> instructions = compiled.instructions;
+        boolean budgeted = AliasScheduler.isEnabled(), suspended = false;
+        long left = BytecodeCompiler.remaining(context), mark = left;
+        try {
+            int i;
+            for (i = start; i < instructions.size() && left > 0 && !chain.exceeded(); i++) {
+                // out of budget for this tick, pause here if this is the outermost alias
+                if (budgeted && !AliasScheduler.charge() && chain.depth() == 1) {
+                    suspended = true;
+                    return this.defer(context, compiled, frame, i);
+                }
+                Instruction instruction = instructions.get(i);
+                left--;
+                boolean calls = instruction instanceof Instruction.Command || instruction instanceof Instruction.Invoke;
+                if (calls) {
+                    source.technicalToolbox$AddToInstructionCount((int) (mark - left));
+                }
+                long instructionStart = System.nanoTime();
+                int out = instruction.execute(this, context, frame);
+                compiled.profile.instruction(i, System.nanoTime() - instructionStart);
+                if (calls) {
+                    left = mark = BytecodeCompiler.remaining(context);
+                }
+                if (out == -3) {
+                    suspended = true;
+                    return this.suspend(context, compiled, frame, i);
+                }
+                else if (out == -2) {
+                    return 0;
+                }
+                else if (out >= 0) {
+                    i = out - 1;
+                }
             }
-            else {
-                Object arg = context.getArgument(var.name, var.type.clazz());
-                variableDefinitions.put(var.name, new Variable(var, arg));
+            return this.finish(context, i >= instructions.size());
+        }
+        finally {
+            source.technicalToolbox$AddToInstructionCount((int) (mark - left));
+            if (!suspended) {
+                compiled.releaseFrame(frame);
             }
+            compiled.profile.invocation(System.nanoTime() - begin);
         }
-        int i;
-        // main loop for running instructions; opcode of -2 is return, -1 is donothing, >=0 is an instruction index to jump to
-        for (i = 0; i < instructions.size() && (ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val() == -1 ||
-                source.technicalToolbox$getInstructionCount() < ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()) &&
-                source.technicalToolbox$getRecursionCount() < ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val(); i++) {
-            source.technicalToolbox$AddToInstructionCount(1);
-            int out = instructions.get(i).execute(this, context, variableDefinitions);
-            if (out == -2) {
-                return 0;
+    }
+
+    /**
+     * Schedules the rest of an execution to resume after a [wait], and returns from the current one.
+     * @param pc index of the wait instruction
+     */
+    private int suspend(CommandContext<ServerCommandSource> context, CompiledAlias compiled, Frame frame, int pc) {
+        ServerCommandSource source = context.getSource();
+        long ticks = ((Instruction.Wait) compiled.instructions.get(pc)).ticks(frame);
+        ((CommandScheduler) source.getServer().getSaveProperties().getMainWorldProperties().getScheduledEvents())
+                .technicalToolbox$AddSuspendedAlias(new SuspendedAlias(this, compiled, context, frame, pc + 1,
+                        source.getWorld().getTime() + ticks));
+        return 1;
+    }
+
+    /**
+     * Pauses an execution that ran out of tick budget, to continue from the same instruction on a later tick.
+     * @param pc index of the next instruction to run
+     */
+    private int defer(CommandContext<ServerCommandSource> context, CompiledAlias compiled, Frame frame, int pc) {
+        AliasScheduler.defer(new SuspendedAlias(this, compiled, context, frame, pc, AliasScheduler.tick()));
+        return 1;
+    }
+
+    /**
+     * Continues a suspended execution with the version of the alias it started with, as the start of a new call chain.
+     * Executions of aliases that have since been removed are dropped.
+     * @param suspended execution to resume
+     * @param resetLimit whether to reset the instruction limit, so that it applies to each resumed slice separately
+     */
+    public void resume(SuspendedAlias suspended, boolean resetLimit) {
+        if (AliasManager.ALIASES.get(this.alias) != this) {
+            return;
+        }
+        AliasedCommandSource source = (AliasedCommandSource) suspended.context().getSource();
+        if (resetLimit) {
+            source.technicalToolbox$AddToInstructionCount(-source.technicalToolbox$getInstructionCount());
+        }
+        CallStack chain = CallStack.enter();
+        AliasScheduler.begin();
+        try {
+            if (ConfigOptions.ALIAS_PROFILING.val()) {
+                this.interpretProfiled(suspended.context(), suspended.compiled(), suspended.frame(), suspended.pc());
             }
-            else if (out >= 0) {
-                i = out - 1;
+            else {
+                this.interpret(new CallStack.Entry(this, suspended.compiled(), suspended.context(), suspended.frame(),
+                        suspended.pc()));
             }
         }
-        if (source.technicalToolbox$getRecursionCount() >= ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
-            if (source.technicalToolbox$getRecursionCount() == ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
+        finally {
+            AliasScheduler.end();
+            chain.exit();
+        }
+    }
+
+    /**
+     * Handles the end of an execution, shared between the interpreter and generated programs. Reports recursion depth or
+     * instruction limit errors if applicable.
+     * @param context command context
+     * @param completed whether execution ran past the last instruction
+     * @return command result
+     */
+    public int finish(CommandContext<ServerCommandSource> context, boolean completed) {
+        CallStack chain = CallStack.current();
+        if (chain.exceeded()) {
+            if (chain.overflow()) {
                 context.getSource().sendError(TextUtils.formattable("Exceeded the max recursion depth of " +
                         ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()));
-                source.technicalToolbox$AddToRecursionDepth(1);
             }
             return 0;
         }
-        if (i < instructions.size()) {
+        if (!completed) {
             context.getSource().sendError(TextUtils.formattable("Exceeded the instruction limit of " +
                     ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()));
             return 0;
         }
-        if (source.technicalToolbox$getRecursionCount() < ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
-            source.technicalToolbox$AddToRecursionDepth(-1);
-        }
         return 1;
     }
 
+    /**
+     * @return the currently published version of this alias, or null if it hasn't compiled successfully yet
+     */
+    public CompiledAlias getCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * @return whether this alias is currently running as generated bytecode rather than being interpreted
+     */
+    public boolean isBytecodeCompiled() {
+        CompiledAlias compiled = this.compiled;
+        return compiled != null && compiled.program != null;
+    }
+
+    /**
+     * Selection arguments accept any string while parsing, so the chosen options are checked before executing.
+     * @return false if any selection isn't one of its options, after sending an error
+     */
+    private boolean checkSelections(CommandContext<ServerCommandSource> context) {
+        for (Variable.Definition var : this.argumentDefinitions.values()) {
+            if ("selection".equals(var.typeName)) {
+                String value = context.getArgument(var.name, String.class);
+                if (!Arrays.asList(var.args).contains(value)) {
+                    context.getSource().sendError(TextUtils.formattable("Invalid option \"" + value + "\" for " + var.name +
+                            ", expected one of: " + String.join(", ", var.args)));
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return what the optimizer changed during the last compilation, or null if it didn't run
+     */
+    public List<String> getOptimizerReport() {
+        CompiledAlias compiled = this.compiled;
+        return compiled != null ? compiled.optimizerReport : null;
+    }
+
     /**
      * Executes command on server with command permission level override enabled
      * @param context command context
@@ -456,6 +1138,16 @@ public class AliasedCommand {
      */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean executeCommand(CommandContext<ServerCommandSource> context, String command) {
+        return this.executeCommand(context, command, null);
+    }
+
+    /**
+     * Executes command on server with command permission level override enabled, reusing cached parses where possible
+     * @param context command context
+     * @param command command to execute
+     * @param cache parse cache for the command line, may be null
+     */
+    public boolean executeCommand(CommandContext<ServerCommandSource> context, String command, CommandParseCache cache) {
         ServerCommandSource source = context.getSource();
         CommandDispatcher<ServerCommandSource> dispatcher = source.getServer().getCommandManager().getDispatcher();
         ((CommandSourceModifier) source).technicalToolbox$setPermissionOverride(true);
@@ -463,7 +1155,7 @@ public class AliasedCommand {
             ((CommandSourceModifier) source).technicalToolbox$shutUp(true);
         }
         try {
-            dispatcher.execute(dispatcher.parse(command, source));
+            dispatcher.execute(cache != null ? cache.parse(dispatcher, command, source) : dispatcher.parse(command, source));
             ((CommandSourceModifier) source).technicalToolbox$shutUp(false);
         }
         catch (CommandSyntaxException e) {
@@ -475,6 +1167,171 @@ public class AliasedCommand {
         return true;
     }
 
+    /**
+     * Runs another alias directly, with its arguments parsed here instead of going through the dispatcher. Falls back to
+     * {@link AliasedCommand#executeCommand} if the callee isn't registered or its arguments don't match, which then
+     * reports the same error as before.
+     * @param context command context
+     * @param command full command line
+     * @param callee name of the alias being called
+     * @param cache parse cache for the command line, may be null
+     */
+    public boolean executeCall(CommandContext<ServerCommandSource> context, String command, String callee, CommandParseCache cache) {
+        AliasedCommand target = AliasManager.ALIASES.get(callee);
+        Map<String, ParsedArgument<ServerCommandSource, ?>> arguments = target != null ? target.bindArguments(command,
+                callee.length()) : null;
+        if (arguments == null) {
+            return this.executeCommand(context, command, cache);
+        }
+        ServerCommandSource source = context.getSource();
+        ((CommandSourceModifier) source).technicalToolbox$setPermissionOverride(true);
+        if (this.silent) {
+            ((CommandSourceModifier) source).technicalToolbox$shutUp(true);
+        }
+        target.execute(new CommandContext<>(source, command, arguments, null, null, List.of(), StringRange.at(0), null, null,
+                false));
+        ((CommandSourceModifier) source).technicalToolbox$shutUp(false);
+        ((CommandSourceModifier) source).technicalToolbox$setPermissionOverride(false);
+        return true;
+    }
+
+    /**
+     * Runs another alias for a [call], binding already evaluated values to its arguments. Values are converted to plain
+     * numeric and string arguments directly; anything else, like entities or bounded ranges, is parsed from its text by
+     * the argument type the same way a command would be.
+     * @param context command context
+     * @param callee name of the alias being called
+     * @param values argument values, in order
+     * @return the returned value, 0 if the callee didn't return one, or null if it couldn't be called after sending an
+     * error
+     */
+    public Operator call(CommandContext<ServerCommandSource> context, String callee, Operator[] values) {
+        AliasedCommand target = AliasManager.ALIASES.get(callee);
+        CommandContext<ServerCommandSource> callContext = this.bindCall(context, target, callee, values);
+        if (callContext == null) {
+            return null;
+        }
+        Operator[] result = new Operator[1];
+        target.execute(callContext, result);
+        return result[0] != null ? result[0] : new Operator.NumberOperator(0);
+    }
+
+    /**
+     * Binds evaluated values to the arguments of an alias for a [call], see {@link AliasedCommand#call}.
+     * @return a context to run the callee with, or null after sending an error
+     */
+    private CommandContext<ServerCommandSource> bindCall(CommandContext<ServerCommandSource> context, AliasedCommand target,
+                                                         String callee, Operator[] values) {
+        ServerCommandSource source = context.getSource();
+        Variable.Definition[] vars = target != null ? target.registeredArguments : null;
+        ArgumentType<?>[] types = target != null ? target.registeredTypes : null;
+        if (vars == null) {
+            source.sendError(TextUtils.formattable("Unknown alias /" + callee));
+            return null;
+        }
+        if (vars.length != values.length) {
+            source.sendError(TextUtils.formattable("/" + callee + " expects " + vars.length + " argument(s), got " + values.length));
+            return null;
+        }
+        Map<String, ParsedArgument<ServerCommandSource, ?>> arguments = new HashMap<>();
+        for (int i = 0; i < vars.length; i++) {
+            Integer type = vars[i].type.argc() == 0 ? AliasConstants.TYPE_MAP.get(vars[i].type.clazz()) : null;
+            Object value;
+            if (type != null) {
+                value = values[i].toType(type);
+            }
+            else {
+                String text = String.valueOf(values[i].getValue());
+                StringReader reader = new StringReader(text);
+                try {
+                    value = types[i].parse(reader);
+                }
+                catch (CommandSyntaxException e) {
+                    source.sendError(TextUtils.formattable(e.getMessage()));
+                    return null;
+                }
+                if (reader.canRead()) {
+                    source.sendError(TextUtils.formattable("Invalid value \"" + text + "\" for " + vars[i].name));
+                    return null;
+                }
+            }
+            arguments.put(vars[i].name, new ParsedArgument<>(0, 0, value));
+        }
+        return new CommandContext<>(source, callee, arguments, null, null, List.of(), StringRange.at(0), null, null, false);
+    }
+
+    /**
+     * Same as {@link AliasedCommand#executeCall}, but for the interpreter loop, which runs calls to interpreted aliases
+     * itself.
+     * @return -4 if the call was pushed to run next, -1 to continue, or -2 to stop
+     */
+    public int stepCall(CommandContext<ServerCommandSource> context, String command, String callee, CommandParseCache cache) {
+        AliasedCommand target = AliasManager.ALIASES.get(callee);
+        Map<String, ParsedArgument<ServerCommandSource, ?>> arguments = target != null ? target.bindArguments(command,
+                callee.length()) : null;
+        if (arguments == null) {
+            return this.executeCommand(context, command, cache) ? -1 : -2;
+        }
+        return target.enter(new CommandContext<>(context.getSource(), command, arguments, null, null, List.of(),
+                StringRange.at(0), null, null, false), null, null);
+    }
+
+    /**
+     * Same as {@link AliasedCommand#call}, but for the interpreter loop, which runs calls to interpreted aliases itself.
+     * The result is assigned through the [call] once the callee finishes.
+     * @return -4 if the call was pushed to run next, -1 to continue, or -2 to stop
+     */
+    public int stepInvoke(CommandContext<ServerCommandSource> context, Frame frame, Instruction.Invoke invoke, String callee,
+                          Operator[] values) {
+        AliasedCommand target = AliasManager.ALIASES.get(callee);
+        CommandContext<ServerCommandSource> callContext = this.bindCall(context, target, callee, values);
+        return callContext != null ? target.enter(callContext, invoke, frame) : -2;
+    }
+
+    /**
+     * Loads the arguments of a rendered call to this alias into a running frame, for {@link Instruction.TailCall}.
+     * @return whether execution can start over with them; otherwise the call has to run normally
+     */
+    public boolean tailCall(CommandContext<ServerCommandSource> context, Frame frame, String command, String callee) {
+        Map<String, ParsedArgument<ServerCommandSource, ?>> arguments = AliasManager.ALIASES.get(callee) == this ?
+                this.bindArguments(command, callee.length()) : null;
+        return arguments != null && this.reenter(new CommandContext<>(context.getSource(), command, arguments, null, null,
+                List.of(), StringRange.at(0), null, null, false), frame);
+    }
+
+    /**
+     * Loads evaluated arguments of a [call] to this alias into a running frame, for {@link Instruction.TailInvoke}.
+     * @return 0 if execution can start over with them, -2 if they couldn't be bound after sending an error, or -1 if the
+     * call has to run normally
+     */
+    public int tailInvoke(CommandContext<ServerCommandSource> context, Frame frame, String callee, Operator[] values) {
+        if (AliasManager.ALIASES.get(callee) != this) {
+            return -1;
+        }
+        CommandContext<ServerCommandSource> callContext = this.bindCall(context, this, callee, values);
+        if (callContext == null) {
+            return -2;
+        }
+        return this.reenter(callContext, frame) ? 0 : -1;
+    }
+
+    /**
+     * Reuses a running frame for another execution of this alias. Only possible if the version it belongs to still has
+     * the registered arguments; anything that would fail is left for a normal call to report.
+     */
+    private boolean reenter(CommandContext<ServerCommandSource> context, Frame frame) {
+        if (frame.owner == null || !frame.owner.binds(this.registeredArguments) || !this.checkSelections(context)) {
+            return false;
+        }
+        try {
+            frame.owner.rebindFrame(context, frame);
+        }
+        catch (CommandSyntaxException e) {
+            return false;
+        }
+        return true;
+    }
+
     public boolean rename(CommandContext<ServerCommandSource> context, String name) {
         this.deregister(context.getSource().getServer(), true);
         this.alias = name;
@@ -717,6 +1574,9 @@ public class AliasedCommand {
             if (this.silent != (ConfigOptions.ALIAS_DEFAULT_SILENT.val())) {
                 bufferedWriter.write("Silent: \"" + this.silent + "\"\n");
             }
+            if (this.pure) {
+                bufferedWriter.write("Pure: true\n");
+            }
             if (!this.argumentDefinitions.isEmpty()) {
                 bufferedWriter.write("Arguments:");
                 for (Variable.Definition var : this.argumentDefinitions.values()) {
@@ -744,13 +1604,15 @@ public class AliasedCommand {
 
     /**
      * Recreates an alias from an alias file. Alias, separator, and permlevel can come in any order and will use defaults
-     * if not provided, but commands must come last.
+     * if not provided, but commands must come last. Doesn't touch any shared state, so files can be read in parallel;
+     * the alias still has to be added to {@link AliasManager#ALIASES} afterward.
      * @param path path to read from
-     * @return whether alias was successfully restored or not; outputs errors if failed
+     * @param errors errors are added here instead of being logged
+     * @return the restored alias, or null if it couldn't be read
      */
-    public static boolean readFromFile(Path path, boolean global) {
+    public static AliasedCommand readFromFile(Path path, boolean global, List<String> errors) {
         try (BufferedReader bufferedReader = Files.newBufferedReader(path)) {
-            boolean readingCommandState = false, silent = ConfigOptions.ALIAS_DEFAULT_SILENT.val();
+            boolean readingCommandState = false, silent = ConfigOptions.ALIAS_DEFAULT_SILENT.val(), pure = false;
             String line, alias = null;
             int permission = ConfigOptions.ALIAS_DEFAULT_PERMISSION.val();
             List<String> commands = new ArrayList<>();
@@ -762,23 +1624,24 @@ public class AliasedCommand {
                         switch (split[0].toLowerCase()) {
                             case "alias" -> {
                                 alias = line.replaceFirst("(?i)Alias: *", "").strip();
-                                if (AliasManager.ALIASES.containsKey(alias) && AliasManager.ALIASES.get(alias).global) {
-                                    return false;
-                                }
                             }
                             case "permission level" -> {
                                 String tmp = line.replaceFirst("(?i)Permission level: *", "").strip();
                                 try {
                                     permission = Integer.parseInt(tmp);
                                 } catch (NumberFormatException e) {
-                                    TechnicalToolbox.error(path + ": Couldn't parse \"" + tmp + "\" as int");
-                                    return false;
+                                    errors.add(path + ": Couldn't parse \"" + tmp + "\" as int");
+                                    return null;
                                 }
                             }
                             case "silent" -> {
                                 String tmp = line.replaceFirst("(?i)Silent: *", "").strip();
                                 silent = Boolean.parseBoolean(tmp);
                             }
+                            case "pure" -> {
+                                String tmp = line.replaceFirst("(?i)Pure: *", "").strip();
+                                pure = Boolean.parseBoolean(tmp);
+                            }
                             case "arguments" -> {
                                 String tmp = line.replaceFirst("(?i)Arguments: *", "").strip();
                                 Matcher m = SAVED_ARGS.matcher(tmp);
@@ -810,19 +1673,19 @@ public class AliasedCommand {
                 }
             }
             if (alias == null) {
-                TechnicalToolbox.error(path + ": Alias not specified in file");
-                return false;
+                errors.add(path + ": Alias not specified in file");
+                return null;
             }
             if (commands.isEmpty()) {
-                TechnicalToolbox.error(path + ": Missing script body");
-                return false;
+                errors.add(path + ": Missing script body");
+                return null;
             }
-            new AliasedCommand(alias, permission, silent, commands, arguments, global);
+            return new AliasedCommand(alias, permission, silent, pure, commands, arguments, global, errors);
         }
         catch (IOException e) {
-            TechnicalToolbox.warn("Something went wrong reading from file " + path);
+            errors.add("Something went wrong reading from file " + path);
         }
-        return true;
+        return null;
     }
 
 }
\ No newline at end of file
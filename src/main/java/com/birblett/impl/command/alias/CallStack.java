@@ -0,0 +1,139 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.config.ConfigOptions;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.ArrayDeque;
+
+/**
+ * The alias executions making up one logical call chain: an outermost execution and everything it runs until it returns,
+ * whether through commands or direct calls. Recursion depth is counted per chain rather than per command source, since
+ * commands run by an alias can get a new source (i.e. through /execute). Direct calls made while interpreting are pushed
+ * here and run by the same interpreter loop instead of nesting Java calls, see {@link AliasedCommand#interpret}.
+ */
+public class CallStack {
+
+    private static final ThreadLocal<CallStack> CURRENT = new ThreadLocal<>();
+
+    /**
+     * A single execution run by the interpreter loop, and where it continues once a direct call it made has finished.
+     */
+    static final class Entry {
+
+        final AliasedCommand alias;
+        final CompiledAlias compiled;
+        final CommandContext<ServerCommandSource> context;
+        final Frame frame;
+        int pc;
+        // [call] waiting on this execution's result and the holder it's returned in, if it was run by one
+        Instruction.Invoke invoke = null;
+        Operator[] result = null;
+
+        Entry(AliasedCommand alias, CompiledAlias compiled, CommandContext<ServerCommandSource> context, Frame frame, int pc) {
+            this.alias = alias;
+            this.compiled = compiled;
+            this.context = context;
+            this.frame = frame;
+            this.pc = pc;
+        }
+
+    }
+
+    // executions waiting on a direct call to finish, innermost first
+    private final ArrayDeque<Entry> waiting = new ArrayDeque<>();
+    private Entry called = null;
+    private int depth = 0;
+    private boolean overflowed = false;
+
+    /**
+     * Joins the call chain currently running, or starts one if nothing is.
+     */
+    static CallStack enter() {
+        CallStack chain = CURRENT.get();
+        if (chain == null) {
+            chain = new CallStack();
+            CURRENT.set(chain);
+        }
+        chain.depth++;
+        return chain;
+    }
+
+    /**
+     * Leaves the chain once an execution returns; the chain ends along with its outermost execution.
+     */
+    void exit() {
+        if (--this.depth == 0) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * @return the chain of the alias currently running on this thread, or null if none is
+     */
+    public static CallStack current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return number of executions in the chain, including ones waiting on a direct call
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    /**
+     * @return whether the chain has reached the max recursion depth; once it has, every execution in it stops
+     */
+    public boolean exceeded() {
+        return this.overflowed || this.depth >= ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val();
+    }
+
+    /**
+     * Marks the chain as having exceeded the max recursion depth.
+     * @return true the first time only, so the error is only reported once
+     */
+    boolean overflow() {
+        boolean first = !this.overflowed;
+        this.overflowed = true;
+        return first;
+    }
+
+    /**
+     * Hands a direct call to the interpreter loop running its caller, which picks it up with {@link #take}.
+     */
+    void call(Entry callee) {
+        this.depth++;
+        this.called = callee;
+    }
+
+    /**
+     * Parks the calling execution and returns the one it called.
+     */
+    Entry take(Entry caller) {
+        Entry callee = this.called;
+        this.called = null;
+        this.waiting.push(caller);
+        return callee;
+    }
+
+    /**
+     * @return number of executions waiting on a direct call, for interpreter loops to tell which ones they pushed
+     */
+    int waiting() {
+        return this.waiting.size();
+    }
+
+    /**
+     * Removes a finished direct call from the chain.
+     * @return the execution that called it, to continue
+     */
+    Entry pop() {
+        this.depth--;
+        return this.waiting.pop();
+    }
+
+}
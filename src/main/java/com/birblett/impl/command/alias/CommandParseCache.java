@@ -0,0 +1,144 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.accessor.command.CommandDispatcherModifier;
+import com.birblett.impl.command.alias.language.CommandTemplate;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.context.CommandContextBuilder;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches Brigadier parses for a single alias command line. Constant lines reuse their whole parse; lines with
+ * placeholders reuse a parse of the fixed text before the first placeholder and only parse the rest. Parses are kept per
+ * source shape, since command requirements can depend on the executing entity, and are dropped whenever the dispatcher
+ * tree changes.
+ */
+public class CommandParseCache {
+
+    private static int generation = 0;
+    // no entity, non-player entity, player
+    private static final int SHAPES = 3;
+
+    private final String text;
+    private final boolean constant;
+    @SuppressWarnings("unchecked")
+    private final ParseResults<ServerCommandSource>[] parses = new ParseResults[SHAPES];
+    private final int[] generations = {-1, -1, -1};
+    private CommandDispatcher<ServerCommandSource> dispatcher = null;
+
+    private CommandParseCache(String text, boolean constant) {
+        this.text = text;
+        this.constant = constant;
+    }
+
+    /**
+     * Drops every cached parse; should be called whenever commands are added to or removed from the dispatcher.
+     */
+    public static void invalidate() {
+        generation++;
+    }
+
+    /**
+     * @return a cache for the given command line, or null if it has no fixed prefix worth caching
+     */
+    public static CommandParseCache of(CommandTemplate template) {
+        if (template.isConstant()) {
+            return new CommandParseCache(template.literals[0], true);
+        }
+        int end = template.literals[0].lastIndexOf(' ');
+        return end > 0 ? new CommandParseCache(template.literals[0].substring(0, end), false) : null;
+    }
+
+    /**
+     * Parses a rendered command line, using the cache where possible.
+     * @param dispatcher dispatcher to parse with
+     * @param command the fully rendered command
+     * @param source source executing the command
+     * @return parse results, same as {@link CommandDispatcher#parse(String, Object)}
+     */
+    public ParseResults<ServerCommandSource> parse(CommandDispatcher<ServerCommandSource> dispatcher, String command, ServerCommandSource source) {
+        if (this.dispatcher != dispatcher) {
+            this.dispatcher = dispatcher;
+            for (int i = 0; i < SHAPES; i++) {
+                this.parses[i] = null;
+                this.generations[i] = -1;
+            }
+        }
+        int shape = source.getEntity() == null ? 0 : source.isExecutedByPlayer() ? 2 : 1;
+        if (this.generations[shape] != generation) {
+            this.generations[shape] = generation;
+            this.parses[shape] = this.prepare(dispatcher, source);
+        }
+        ParseResults<ServerCommandSource> cached = this.parses[shape];
+        if (cached == null) {
+            return dispatcher.parse(command, source);
+        }
+        if (this.constant) {
+            for (CommandContextBuilder<ServerCommandSource> c = cached.getContext(); c != null; c = c.getChild()) {
+                c.withSource(source);
+            }
+            return cached;
+        }
+        ParseResults<ServerCommandSource> resumed = this.resume(dispatcher, cached, command, source);
+        if (resumed != null) {
+            return resumed;
+        }
+        ParseResults<ServerCommandSource> parse = dispatcher.parse(command, source);
+        // the full parse worked where resuming didn't, so the prefix isn't a clean split point for this line
+        if (isComplete(parse)) {
+            this.parses[shape] = null;
+        }
+        return parse;
+    }
+
+    private static boolean isComplete(ParseResults<ServerCommandSource> parse) {
+        return parse.getExceptions().isEmpty() && !parse.getReader().canRead();
+    }
+
+    /**
+     * Parses the cached text ahead of time.
+     * @return the parse, or null if it can't be reused
+     */
+    private ParseResults<ServerCommandSource> prepare(CommandDispatcher<ServerCommandSource> dispatcher, ServerCommandSource source) {
+        ParseResults<ServerCommandSource> parse = dispatcher.parse(this.text, source);
+        if (!isComplete(parse)) {
+            return null;
+        }
+        CommandContextBuilder<ServerCommandSource> last = parse.getContext().getLastChild();
+        if (this.constant) {
+            return last.getCommand() != null ? parse : null;
+        }
+        return !last.getNodes().isEmpty() && last.getNodes().getLast().getNode().getRedirect() == null ? parse : null;
+    }
+
+    /**
+     * Continues parsing a command from the last node of its cached prefix, then reattaches any redirected contexts.
+     * @return the parse, or null if it didn't fully succeed
+     */
+    @SuppressWarnings("unchecked")
+    private ParseResults<ServerCommandSource> resume(CommandDispatcher<ServerCommandSource> dispatcher, ParseResults<ServerCommandSource>
+            cached, String command, ServerCommandSource source) {
+        List<CommandContextBuilder<ServerCommandSource>> chain = new ArrayList<>();
+        for (CommandContextBuilder<ServerCommandSource> c = cached.getContext(); c != null; c = c.getChild()) {
+            chain.add(c.withSource(source));
+        }
+        CommandContextBuilder<ServerCommandSource> last = chain.getLast();
+        StringReader reader = new StringReader(command);
+        reader.setCursor(this.text.length() + 1);
+        ParseResults<ServerCommandSource> parse = ((CommandDispatcherModifier<ServerCommandSource>) dispatcher)
+                .technicalToolbox$parseNodes(last.getNodes().getLast().getNode(), reader, last);
+        if (!isComplete(parse)) {
+            return null;
+        }
+        CommandContextBuilder<ServerCommandSource> context = parse.getContext();
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            context = chain.get(i).copy().withChild(context);
+        }
+        return new ParseResults<>(context, parse.getReader(), parse.getExceptions());
+    }
+
+}
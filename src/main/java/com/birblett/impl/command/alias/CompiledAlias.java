@@ -0,0 +1,229 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.BytecodeCompiler;
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.command.alias.language.Variable;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.command.argument.Vec3ArgumentType;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.*;
+
+/**
+ * A single compiled version of an alias: its instructions, slot layout, argument binders and generated program if any.
+ * Nothing here changes after construction apart from profiling data and memoized results, so recompiling just publishes
+ * a new instance and executions already in progress keep running the version they started with.
+ */
+public class CompiledAlias {
+
+    /**
+     * Loads a single command argument into its frame slot.
+     */
+    @FunctionalInterface
+    public interface ArgumentBinder {
+
+        void bind(CommandContext<ServerCommandSource> context, Frame frame) throws CommandSyntaxException;
+
+    }
+
+    public final List<Instruction> instructions;
+    public final Map<String, Integer> slots;
+    public final BytecodeCompiler.CompiledProgram program;
+    public final List<String> optimizerReport;
+    public final AliasProfile profile;
+    // cached results for pure aliases, null otherwise
+    public final AliasMemo memo;
+    // names of aliases run as plain commands, which are bound as direct calls once they become callable
+    public final Set<String> commandTargets = new HashSet<>();
+    private final List<Variable.Definition> arguments;
+    private final ArgumentBinder[] binders;
+    // frames are sized for this layout, so the pool goes away along with it
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+    /**
+     * @param instructions linked instructions, which must not be modified afterward
+     * @param slots frame slot of each variable name; arguments occupy the first slots
+     * @param arguments argument definitions, in order
+     * @param program generated program, or null to interpret
+     * @param optimizerReport what the optimizer changed, or null if it didn't run
+     * @param pure whether results are memoized, see {@link AliasMemo}
+     */
+    public CompiledAlias(List<Instruction> instructions, Map<String, Integer> slots, Collection<Variable.Definition> arguments,
+                         BytecodeCompiler.CompiledProgram program, List<String> optimizerReport, boolean pure) {
+        this.instructions = List.copyOf(instructions);
+        this.slots = Collections.unmodifiableMap(new LinkedHashMap<>(slots));
+        this.program = program;
+        this.optimizerReport = optimizerReport != null ? List.copyOf(optimizerReport) : null;
+        this.profile = new AliasProfile(this.instructions.size());
+        this.arguments = List.copyOf(arguments);
+        this.memo = pure ? new AliasMemo(this.arguments) : null;
+        for (Instruction instruction : this.instructions) {
+            if (instruction instanceof Instruction.Command command && !(instruction instanceof Instruction.Call)) {
+                String name = Instruction.Call.callee(command.command());
+                if (name != null) {
+                    this.commandTargets.add(name);
+                }
+            }
+        }
+        this.binders = new ArgumentBinder[arguments.size()];
+        int slot = 0;
+        for (Variable.Definition var : arguments) {
+            int index = slot++;
+            this.binders[index] = switch (var.typeName) {
+                // selections are bound as their option index as well, see Instruction.Switch
+                case "selection" -> {
+                    HashMap<String, Integer> ordinals = new HashMap<>();
+                    for (int i = 0; i < var.args.length; i++) {
+                        ordinals.putIfAbsent(var.args[i], i);
+                    }
+                    yield (context, frame) -> {
+                        String value = context.getArgument(var.name, String.class);
+                        frame.setSelection(index, value, ordinals.getOrDefault(value, -1));
+                    };
+                }
+                // selectors and relative coordinates are resolved here once, so commands using them get the result as
+                // a uuid or absolute coordinates instead of evaluating them again
+                case "entity" -> (context, frame) -> {
+                    Entity entity = EntityArgumentType.getEntity(context, var.name);
+                    frame.setResolved(index, entity.getUuidAsString(), entity);
+                };
+                // names are only for expressions; commands can't take them back, so they have to [foreach] instead
+                case "entities" -> (context, frame) -> {
+                    List<? extends Entity> entities = List.copyOf(EntityArgumentType.getOptionalEntities(context, var.name));
+                    StringJoiner names = new StringJoiner(", ");
+                    entities.forEach(entity -> names.add(entity.getName().getString()));
+                    frame.setResolved(index, names.toString(), entities);
+                };
+                case "block_pos" -> (context, frame) -> {
+                    BlockPos pos = BlockPosArgumentType.getBlockPos(context, var.name);
+                    frame.setResolved(index, pos.getX() + " " + pos.getY() + " " + pos.getZ(), pos);
+                };
+                case "vec3" -> (context, frame) -> {
+                    Vec3d pos = Vec3ArgumentType.getVec3(context, var.name);
+                    frame.setResolved(index, pos.x + " " + pos.y + " " + pos.z, pos);
+                };
+                default -> (context, frame) -> frame.set(index, context.getArgument(var.name, var.type.clazz()));
+            };
+        }
+    }
+
+    /**
+     * Binds command lines to whichever aliases are currently callable, without recompiling the script; see
+     * {@link AliasedCommand#bindCalls}.
+     * @param alias alias this was compiled for
+     * @return the rebound version, or null if nothing changed
+     */
+    public CompiledAlias rebind(AliasedCommand alias) {
+        List<Instruction> instructions = new ArrayList<>(this.instructions);
+        if (!AliasedCommand.bindCalls(instructions, alias.getAlias())) {
+            return null;
+        }
+        LinkedHashMap<String, Integer> slots = new LinkedHashMap<>(this.slots);
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) != this.instructions.get(i)) {
+                instructions.get(i).link(slots);
+            }
+        }
+        BytecodeCompiler.CompiledProgram program = this.program != null ? BytecodeCompiler.compile(alias, instructions,
+                this.arguments, slots) : null;
+        return new CompiledAlias(instructions, slots, this.arguments, program, this.optimizerReport, this.memo != null);
+    }
+
+    /**
+     * Takes a frame from the pool, or allocates one if none are free, and loads command arguments into it. Nested
+     * executions of the same alias each get their own frame.
+     * @throws CommandSyntaxException if an entity or position argument can't be resolved; the frame is released first
+     */
+    public Frame acquireFrame(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        Frame frame = this.frames.poll();
+        if (frame != null) {
+            frame.reset();
+        }
+        else {
+            frame = new Frame(this.slots.size(), this);
+        }
+        frame.source = context.getSource();
+        frame.key = this.memo != null ? this.memo.key(context) : null;
+        try {
+            for (ArgumentBinder binder : this.binders) {
+                binder.bind(context, frame);
+            }
+        }
+        catch (CommandSyntaxException e) {
+            this.releaseFrame(frame);
+            throw e;
+        }
+        return frame;
+    }
+
+    /**
+     * @return whether this was compiled with the given arguments, so a tail call binding them can reuse its frames
+     */
+    public boolean binds(Variable.Definition[] arguments) {
+        if (arguments == null || arguments.length != this.arguments.size()) {
+            return false;
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] != this.arguments.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads new arguments into a running frame for a tail call, clearing everything else like a new execution would.
+     * Where the execution returns to is kept, and so is what its result is memoized under, since a tail call returns
+     * the same result.
+     * @throws CommandSyntaxException if an entity or position argument can't be resolved
+     */
+    public void rebindFrame(CommandContext<ServerCommandSource> context, Frame frame) throws CommandSyntaxException {
+        ServerCommandSource source = frame.source;
+        Operator[] result = frame.result;
+        List<Object> key = frame.key;
+        frame.reset();
+        frame.source = source;
+        frame.result = result;
+        frame.key = key;
+        for (ArgumentBinder binder : this.binders) {
+            binder.bind(context, frame);
+        }
+    }
+
+    /**
+     * Finishes a new execution of a pure alias straight away if a result for the same arguments is cached, returning it
+     * the same way [return] would.
+     * @return whether the execution was finished and its frame released
+     */
+    public boolean recall(Frame frame) {
+        Operator value = frame.key != null ? this.memo.get(frame.key) : null;
+        if (value == null) {
+            return false;
+        }
+        frame.key = null;
+        Instruction.Return.set(frame.source, frame, value);
+        this.releaseFrame(frame);
+        return true;
+    }
+
+    public void releaseFrame(Frame frame) {
+        // a tail [call] whose last execution returned nothing still returns 0, see Instruction.TailInvoke. this also
+        // happens if it was stopped early, so it isn't memoized
+        if (frame.returnType >= 0) {
+            frame.key = null;
+            Instruction.Return.set(frame.source, frame, null);
+        }
+        frame.source = null;
+        frame.result = null;
+        this.frames.push(frame);
+    }
+
+}
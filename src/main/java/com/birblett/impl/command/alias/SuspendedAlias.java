@@ -0,0 +1,21 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.ServerCommandSource;
+
+/**
+ * An alias execution paused by [wait] or by running out of tick budget. Executions paused by [wait] resume once the main
+ * world timer reaches the given tick.
+ */
+public record SuspendedAlias(AliasedCommand alias, CompiledAlias compiled, CommandContext<ServerCommandSource> context, Frame frame,
+                             int pc, long tick) {
+
+    /**
+     * Resumes after a [wait]; the instruction limit starts over.
+     */
+    public void resume() {
+        this.alias.resume(this, true);
+    }
+
+}
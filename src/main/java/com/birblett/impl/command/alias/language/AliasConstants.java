@@ -1,6 +1,11 @@
 package com.birblett.impl.command.alias.language;
 
 import com.mojang.brigadier.arguments.*;
+import net.minecraft.command.EntitySelector;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.command.argument.PosArgument;
+import net.minecraft.command.argument.Vec3ArgumentType;
 
 import java.util.HashMap;
 import java.util.function.BiFunction;
@@ -14,7 +19,8 @@ public class AliasConstants {
     public static final HashMap<Class<?>, Integer> TYPE_MAP = new HashMap<>();
     public static final HashMap<String, Integer> TYPE_VALUE_MAP = new HashMap<>();
     public static final HashMap<Integer, String> INV_VALUE_MAP = new HashMap<>();
-    public static final Pattern TOKEN = Pattern.compile("((?<!\\\\)\".*?(?<!\\\\)\"|[0-9]+[.][0-9]+[fF]?|[0-9]+[fF]?|[()+\\-%*/^]|[a-zA-Z_][a-zA-Z0-9_]*)");
+    public static final Pattern TOKEN = Pattern.compile("((?<!\\\\)\".*?(?<!\\\\)\"|[0-9]+[.][0-9]+[fF]?|[0-9]+[fF]?|[()+\\-%*/^,]|[a-zA-Z_][a-zA-Z0-9_]*)");
+    public static final Pattern PLACEHOLDER = Pattern.compile("\\{\\$([a-zA-Z_][a-zA-Z0-9_]*)}");
 
     static {
         ARGUMENT_TYPES.put("int", new Variable.Entry<>(0, opt -> IntegerArgumentType.integer(), Integer.class));
@@ -34,6 +40,11 @@ public class AliasConstants {
         ARGUMENT_TYPES.put("string", new Variable.Entry<>(0, opt -> StringArgumentType.string(), String.class));
         ARGUMENT_TYPES.put("regex", new Variable.Entry<>(1, opt -> StringArgumentType.string(), String.class));
         ARGUMENT_TYPES.put("selection", new Variable.Entry<>(-1, opt -> StringArgumentType.string(), String.class));
+        // resolved once when the alias runs, see CompiledAlias
+        ARGUMENT_TYPES.put("entity", new Variable.Entry<>(0, opt -> EntityArgumentType.entity(), EntitySelector.class));
+        ARGUMENT_TYPES.put("entities", new Variable.Entry<>(0, opt -> EntityArgumentType.entities(), EntitySelector.class));
+        ARGUMENT_TYPES.put("block_pos", new Variable.Entry<>(0, opt -> BlockPosArgumentType.blockPos(), PosArgument.class));
+        ARGUMENT_TYPES.put("vec3", new Variable.Entry<>(0, opt -> Vec3ArgumentType.vec3(), PosArgument.class));
         PRECEDENCE.put("+", 0);
         PRECEDENCE.put("-", 0);
         PRECEDENCE.put("*", 1);
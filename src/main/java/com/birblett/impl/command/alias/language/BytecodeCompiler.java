@@ -0,0 +1,1260 @@
+package com.birblett.impl.command.alias.language;
+
+import com.birblett.TechnicalToolbox;
+import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.accessor.command.delay.AliasedCommandSource;
+import com.birblett.impl.command.alias.AliasedCommand;
+import com.birblett.impl.command.alias.CallStack;
+import com.birblett.impl.command.alias.CommandParseCache;
+import com.birblett.impl.config.ConfigOptions;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.command.ServerCommandSource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * Compiles the output of {@link AliasedCommand#compile()} into a hidden class per alias, with variables held in JVM
+ * locals, jumps as real branches and arithmetic on primitives. Only scripts where every variable keeps a single type are
+ * supported; anything else returns null and runs on the interpreter instead, which remains the reference implementation.
+ * <br><br>
+ * Generated code must never reference Minecraft classes or methods by name, since those are remapped at runtime, so
+ * anything touching the command source goes through the static hooks at the bottom of this class.
+ */
+@SuppressWarnings("JavadocReference")
+public class BytecodeCompiler implements Opcodes {
+
+    /**
+     * Implemented by generated classes; behaves the same as the interpreter loop in AliasedCommand#execute.
+     */
+    public interface CompiledProgram {
+
+        int run(AliasedCommand alias, CommandContext<ServerCommandSource> context, Frame frame);
+
+    }
+
+    /**
+     * Expression tree rebuilt from a postfix queue, with the runtime kind of each node resolved ahead of time.
+     */
+    private record Node(Object token, Node left, Node right, int kind, boolean var, Node[] args) {
+
+        Node(Object token, Node left, Node right, int kind, boolean var) {
+            this(token, left, right, kind, var, null);
+        }
+
+    }
+
+    private static final int LONG = 0, DOUBLE = 1, FLOAT = 2, STRING = 3;
+    private static final String SELF = Type.getInternalName(BytecodeCompiler.class);
+    private static final String PROGRAM = Type.getInternalName(CompiledProgram.class);
+    private static final String ALIAS = Type.getInternalName(AliasedCommand.class);
+    private static final String CONTEXT = Type.getDescriptor(CommandContext.class);
+    private static final String FRAME = Type.getDescriptor(Frame.class);
+    private static final String CACHES = Type.getDescriptor(CommandParseCache[].class);
+    private static final String CACHE = Type.getDescriptor(CommandParseCache.class);
+    private static final String INTRINSIC = Type.getInternalName(Intrinsic.class);
+    private static final String OPERATOR = Type.getInternalName(Operator.class);
+    private static final String BUILDER = "java/lang/StringBuilder";
+    // returned by the tail [call] hook when the program should start over
+    private static final Operator RESTART = new Operator.NumberOperator(0);
+    // fixed local slots: this, alias, context, frame, remaining instruction budget, budget at last sync
+    private static final int L_ALIAS = 1, L_CONTEXT = 2, L_FRAME = 3, L_LEFT = 4, L_MARK = 6, L_FIRST = 8;
+
+    private final String name;
+    private final String className;
+    private final List<Instruction> instructions;
+    private final Collection<Variable.Definition> arguments;
+    private final Map<String, Integer> layout;
+    // keyed by frame slot
+    private final LinkedHashMap<Integer, Integer> kinds = new LinkedHashMap<>();
+    private final HashMap<Integer, Integer> locals = new HashMap<>();
+    private final HashMap<Integer, Integer> flags = new HashMap<>();
+    // selection arguments switched on by option index, and the local holding a rendered switch value
+    private final HashMap<Integer, Integer> ordinals = new HashMap<>();
+    private int key = -1;
+    private final Node[][] trees;
+    private final List<List<Object>> templates = new ArrayList<>();
+
+    private BytecodeCompiler(String name, List<Instruction> instructions, Collection<Variable.Definition> arguments,
+                             Map<String, Integer> layout) {
+        this.name = name;
+        this.className = SELF.substring(0, SELF.lastIndexOf('/') + 1) + "GeneratedAlias$" + name.replaceAll("[^A-Za-z0-9_]", "_");
+        this.instructions = instructions;
+        this.arguments = arguments;
+        this.layout = layout;
+        this.trees = new Node[instructions.size()][];
+    }
+
+    /**
+     * Attempts to generate and load a program for the given instructions.
+     * @param alias alias being compiled, only used for naming and logging
+     * @param instructions compiled instruction list; must not be modified afterward
+     * @param arguments argument definitions, in order
+     * @param layout frame slot of each variable name; arguments occupy the first slots
+     * @return a loaded program, or null if the script is unsupported or generation failed
+     */
+    public static CompiledProgram compile(AliasedCommand alias, List<Instruction> instructions, Collection<Variable.Definition> arguments,
+                                          Map<String, Integer> layout) {
+        BytecodeCompiler compiler = new BytecodeCompiler(alias.getAlias(), List.copyOf(instructions), arguments, Map.copyOf(layout));
+        if (!compiler.analyze()) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(compiler.generate(), true);
+            // parse caches are handed over as an array rather than through constants, indexed by instruction
+            CommandParseCache[] caches = new CommandParseCache[compiler.instructions.size()];
+            for (int i = 0; i < caches.length; i++) {
+                if (compiler.instructions.get(i) instanceof Instruction.Command command) {
+                    caches[i] = command.cache;
+                }
+            }
+            return (CompiledProgram) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class,
+                    CommandParseCache[].class)).invoke(caches);
+        }
+        catch (Throwable e) {
+            TechnicalToolbox.warn("Couldn't generate bytecode for /{}, falling back to interpreter: {}", alias.getAlias(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Resolves a single storage kind per variable and builds expression trees for every instruction.
+     * @return false if the program uses anything the generator doesn't support
+     */
+    private boolean analyze() {
+        int slot = 0;
+        for (Variable.Definition def : this.arguments) {
+            int kind = switch (AliasConstants.TYPE_MAP.getOrDefault(def.type.clazz(), 4)) {
+                case 0, 1 -> LONG;
+                case 2 -> FLOAT;
+                case 3 -> DOUBLE;
+                default -> STRING;
+            };
+            this.kinds.put(slot++, kind);
+        }
+        // recursive aliases are left to the interpreter, which runs direct calls without nesting java calls; tail calls
+        // are fine since they just start over
+        for (Instruction instruction : this.instructions) {
+            String callee = switch (instruction) {
+                case Instruction.TailCall ignored -> null;
+                case Instruction.TailInvoke ignored -> null;
+                case Instruction.Call call -> call.callee;
+                case Instruction.Invoke call -> call.callee;
+                default -> null;
+            };
+            if (this.name.equals(callee)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < this.instructions.size(); i++) {
+            Instruction instruction = this.instructions.get(i);
+            switch (instruction) {
+                case Instruction.Let let -> {
+                    Node tree = this.tree(let.post);
+                    if (tree == null || !this.assign(let.slot, tree.kind)) {
+                        return false;
+                    }
+                    this.trees[i] = new Node[]{tree};
+                }
+                case Instruction.ForEach loop -> {
+                    // only arguments are read back from the frame, other variables just live in locals
+                    if (loop.sourceSlot >= this.arguments.size() || !this.assign(loop.counterSlot, LONG) ||
+                            !this.assign(loop.slot, STRING)) {
+                        return false;
+                    }
+                }
+                case Instruction.For loop -> {
+                    Node from = this.tree(loop.from), to = this.tree(loop.to), step = this.tree(loop.step);
+                    if (from == null || to == null || step == null || from.kind == STRING || to.kind == STRING ||
+                            step.kind == STRING || !this.assign(loop.counterSlot, LONG) || !this.assign(loop.endSlot, LONG) ||
+                            !this.assign(loop.stepSlot, LONG) || !this.assign(loop.slot, LONG)) {
+                        return false;
+                    }
+                    this.trees[i] = new Node[]{from, to, step};
+                }
+                case Instruction.ForNext next -> {
+                    if (!this.assign(next.counterSlot, LONG) || !this.assign(next.endSlot, LONG) ||
+                            !this.assign(next.stepSlot, LONG) || !this.assign(next.slot, LONG)) {
+                        return false;
+                    }
+                }
+                case Instruction.If cond -> {
+                    Node left = this.tree(cond.left), right = this.tree(cond.right);
+                    if (left == null || right == null) {
+                        return false;
+                    }
+                    this.trees[i] = new Node[]{left, right};
+                }
+                case Instruction.Return ret -> {
+                    if (ret.inferredType >= 0) {
+                        Node tree = this.tree(ret.post);
+                        if (tree == null) {
+                            return false;
+                        }
+                        this.trees[i] = new Node[]{tree};
+                    }
+                }
+                case Instruction.Fetch fetch -> {
+                    int kind = switch (fetch.type) {
+                        case 0, 1 -> LONG;
+                        case 2 -> FLOAT;
+                        case 3 -> DOUBLE;
+                        default -> STRING;
+                    };
+                    if (!this.assign(fetch.slot, kind)) {
+                        return false;
+                    }
+                }
+                case Instruction.Invoke call -> {
+                    Node[] args = new Node[call.args.size()];
+                    for (int j = 0; j < args.length; j++) {
+                        if ((args[j] = this.tree(call.args.get(j))) == null) {
+                            return false;
+                        }
+                    }
+                    int kind = switch (call.type) {
+                        case 0, 1 -> LONG;
+                        case 2 -> FLOAT;
+                        case 3 -> DOUBLE;
+                        default -> STRING;
+                    };
+                    if (!this.assign(call.slot, kind)) {
+                        return false;
+                    }
+                    this.trees[i] = args;
+                }
+                case Instruction.Switch sw -> {
+                    Node tree = this.tree(sw.post);
+                    if (tree == null) {
+                        return false;
+                    }
+                    this.trees[i] = new Node[]{tree};
+                    if (sw.ordinalTargets != null && sw.slot < this.arguments.size()) {
+                        this.ordinals.put(sw.slot, -1);
+                    }
+                    else {
+                        this.key = 0;
+                    }
+                }
+                case Instruction.SetScore set -> {
+                    Node holder = this.tree(set.holder), objective = this.tree(set.objective), value = this.tree(set.value);
+                    if (holder == null || objective == null || value == null || value.kind == STRING) {
+                        return false;
+                    }
+                    this.trees[i] = new Node[]{holder, objective, value};
+                }
+                case Instruction.Command ignored -> {}
+                case Instruction.Jump ignored -> {}
+                default -> {
+                    return false;
+                }
+            }
+        }
+        // option indices are only bound once, so reassigned selections are switched on by value instead. the same goes
+        // for resolved entities, which aren't worth supporting once reassigned
+        for (Instruction instruction : this.instructions) {
+            Integer assigned = switch (instruction) {
+                case Instruction.Let let -> let.slot;
+                case Instruction.Fetch fetch -> fetch.slot;
+                case Instruction.Invoke call -> call.slot;
+                case Instruction.ForEach loop -> loop.slot;
+                case Instruction.For loop -> loop.slot;
+                case Instruction.ForNext next -> next.slot;
+                default -> null;
+            };
+            if (assigned != null && this.ordinals.remove(assigned) != null) {
+                this.key = 0;
+            }
+            if (assigned != null && this.instructions.stream().anyMatch(other -> other instanceof Instruction.ForEach loop &&
+                    loop.sourceSlot == assigned)) {
+                return false;
+            }
+        }
+        // merge command templates into literal and variable segments, and give non-argument variables an assigned flag if
+        // they're ever substituted, since the placeholder is left as-is until first assignment. variables that are never
+        // assigned at all just stay literal
+        for (Instruction instruction : this.instructions) {
+            List<Object> template = new ArrayList<>();
+            if (instruction instanceof Instruction.Command command) {
+                CommandTemplate t = command.template;
+                StringBuilder literal = new StringBuilder(t.literals[0]);
+                for (int j = 0; j < t.slots.length; j++) {
+                    Integer kind = this.kinds.get(t.slots[j]);
+                    if (kind != null) {
+                        template.add(literal.toString());
+                        template.add(new Node(t.slots[j], null, null, kind, true));
+                        this.flags.putIfAbsent(t.slots[j], -1);
+                        literal.setLength(0);
+                    }
+                    else {
+                        literal.append("{$").append(t.names[j]).append('}');
+                    }
+                    literal.append(t.literals[j + 1]);
+                }
+                template.add(literal.toString());
+            }
+            this.templates.add(template);
+        }
+        for (int i = 0; i < this.arguments.size(); i++) {
+            this.flags.remove(i);
+        }
+        return true;
+    }
+
+    /**
+     * Records an assignment, failing if the variable would change kind.
+     */
+    private boolean assign(int var, int kind) {
+        Integer old = this.kinds.putIfAbsent(var, kind);
+        return old == null || old == kind;
+    }
+
+    /**
+     * Rebuilds an expression tree from a postfix queue, mirroring the type promotion done by {@link Operator}.
+     * @return root node, or null if a variable has no known kind
+     */
+    private Node tree(Queue<Object> post) {
+        Deque<Node> stack = new ArrayDeque<>();
+        for (Object o : post) {
+            if (o instanceof String s && s.length() == 1 && "+-*/^%".contains(s)) {
+                if (stack.size() < 2) {
+                    return null;
+                }
+                Node right = stack.pop(), left = stack.pop();
+                int kind;
+                if (left.kind == STRING || right.kind == STRING) {
+                    if (!"+".equals(s)) {
+                        return null;
+                    }
+                    kind = STRING;
+                }
+                else {
+                    kind = "^".equals(s) || left.kind == DOUBLE || right.kind == DOUBLE ? DOUBLE : LONG;
+                }
+                stack.push(new Node(s, left, right, kind, false));
+            }
+            else if (o instanceof Integer s) {
+                Integer kind = this.kinds.get(s);
+                if (kind == null) {
+                    return null;
+                }
+                // floats are widened on read, same as the interpreter
+                stack.push(new Node(s, null, null, kind == FLOAT ? DOUBLE : kind, true));
+            }
+            else if (o instanceof Operator.NumberOperator n) {
+                stack.push(new Node(n.getValue(), null, null, n.getValue() instanceof Long ? LONG : DOUBLE, false));
+            }
+            else if (o instanceof Operator.StringOperator s) {
+                stack.push(new Node(s.str(), null, null, STRING, false));
+            }
+            else if (o instanceof Intrinsic.Call call && stack.size() >= call.argc()) {
+                Node[] args = new Node[call.argc()];
+                for (int i = args.length - 1; i >= 0; i--) {
+                    args[i] = stack.pop();
+                }
+                Integer kind = this.callKind(call.intrinsic(), args);
+                if (kind == null) {
+                    return null;
+                }
+                stack.push(new Node(call, null, null, kind, false, args));
+            }
+            else {
+                return null;
+            }
+        }
+        return stack.size() == 1 ? stack.pop() : null;
+    }
+
+    /**
+     * @return kind of an intrinsic's result, or null if the argument kinds aren't what the parser checked for
+     */
+    private Integer callKind(Intrinsic intrinsic, Node[] args) {
+        for (int i = 0; i < args.length; i++) {
+            boolean string = intrinsic == Intrinsic.LENGTH || intrinsic == Intrinsic.SCORE || intrinsic == Intrinsic.SUBSTRING && i == 0;
+            if (string != (args[i].kind == STRING) || intrinsic == Intrinsic.SUBSTRING && i > 0 && args[i].kind != LONG) {
+                return null;
+            }
+        }
+        return switch (intrinsic) {
+            case MIN, MAX -> args[0].kind == LONG && args[1].kind == LONG ? LONG : DOUBLE;
+            case ABS -> args[0].kind;
+            case SQRT -> DOUBLE;
+            case FLOOR, LENGTH, SCORE -> LONG;
+            case SUBSTRING -> STRING;
+        };
+    }
+
+    private byte[] generate() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V21, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, this.className, null, "java/lang/Object", new String[]{PROGRAM});
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "caches", CACHES, null, null).visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + CACHES + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, this.className, "caches", CACHES);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "run", "(L" + ALIAS + ";" + CONTEXT + FRAME + ")I", null, null);
+        mv.visitCode();
+        this.generateRun(mv);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private void generateRun(MethodVisitor mv) {
+        Label[] labels = new Label[this.instructions.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+        Label end = new Label(), exit = new Label(), restart = new Label();
+        // allocate locals
+        int next = L_FIRST;
+        for (Map.Entry<Integer, Integer> e : this.kinds.entrySet()) {
+            this.locals.put(e.getKey(), next);
+            next += e.getValue() == STRING ? 1 : 2;
+        }
+        for (int var : this.flags.keySet()) {
+            this.flags.put(var, next++);
+        }
+        for (int var : this.ordinals.keySet()) {
+            this.ordinals.put(var, next++);
+        }
+        if (this.key >= 0) {
+            this.key = next++;
+        }
+        // prologue: budget, recursion check, arguments, and defaults for everything else
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "remaining", "(" + CONTEXT + ")J", false);
+        mv.visitInsn(DUP2);
+        mv.visitVarInsn(LSTORE, L_LEFT);
+        mv.visitVarInsn(LSTORE, L_MARK);
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "recursionExceeded", "(" + CONTEXT + ")Z", false);
+        mv.visitJumpInsn(IFNE, exit);
+        // tail calls load new arguments into the frame and start over from here, having synced the instruction count
+        mv.visitLabel(restart);
+        mv.visitVarInsn(LLOAD, L_LEFT);
+        mv.visitVarInsn(LSTORE, L_MARK);
+        int argc = this.arguments.size();
+        for (int slot = 0; slot < argc; slot++) {
+            mv.visitVarInsn(ALOAD, L_FRAME);
+            mv.visitLdcInsn(slot);
+            switch (this.kinds.get(slot)) {
+                case LONG -> mv.visitMethodInsn(INVOKESTATIC, SELF, "argLong", "(" + FRAME + "I)J", false);
+                case DOUBLE, FLOAT -> mv.visitMethodInsn(INVOKESTATIC, SELF, "argDouble", "(" + FRAME + "I)D", false);
+                default -> mv.visitMethodInsn(INVOKESTATIC, SELF, "argString", "(" + FRAME + "I)Ljava/lang/String;", false);
+            }
+            this.store(mv, slot);
+        }
+        for (Map.Entry<Integer, Integer> e : this.ordinals.entrySet()) {
+            mv.visitVarInsn(ALOAD, L_FRAME);
+            mv.visitLdcInsn(e.getKey());
+            mv.visitMethodInsn(INVOKESTATIC, SELF, "argOrdinal", "(" + FRAME + "I)I", false);
+            mv.visitVarInsn(ISTORE, e.getValue());
+        }
+        for (Map.Entry<Integer, Integer> e : this.kinds.entrySet()) {
+            if (e.getKey() >= argc) {
+                switch (e.getValue()) {
+                    case LONG -> mv.visitInsn(LCONST_0);
+                    case DOUBLE, FLOAT -> mv.visitInsn(DCONST_0);
+                    default -> mv.visitInsn(ACONST_NULL);
+                }
+                mv.visitVarInsn(e.getValue() == LONG ? LSTORE : e.getValue() == STRING ? ASTORE : DSTORE, this.locals.get(e.getKey()));
+            }
+        }
+        for (int slot : this.flags.values()) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, slot);
+        }
+        for (int i = 0; i < this.instructions.size(); i++) {
+            Instruction instruction = this.instructions.get(i);
+            mv.visitLabel(labels[i]);
+            // instruction limit, checked before every instruction like the interpreter
+            mv.visitVarInsn(LLOAD, L_LEFT);
+            mv.visitInsn(LCONST_0);
+            mv.visitInsn(LCMP);
+            mv.visitJumpInsn(IFLE, exit);
+            mv.visitVarInsn(LLOAD, L_LEFT);
+            mv.visitInsn(LCONST_1);
+            mv.visitInsn(LSUB);
+            mv.visitVarInsn(LSTORE, L_LEFT);
+            switch (instruction) {
+                case Instruction.Let let -> {
+                    this.expression(mv, this.trees[i][0]);
+                    this.store(mv, let.slot);
+                }
+                case Instruction.ForEach loop -> {
+                    Label found = new Label();
+                    mv.visitVarInsn(ALOAD, L_FRAME);
+                    mv.visitLdcInsn(loop.sourceSlot);
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.counterSlot));
+                    mv.visitMethodInsn(INVOKESTATIC, SELF, "element", "(" + FRAME + "IJ)Ljava/lang/String;", false);
+                    mv.visitInsn(DUP);
+                    mv.visitJumpInsn(IFNONNULL, found);
+                    mv.visitInsn(POP);
+                    mv.visitJumpInsn(GOTO, this.target(labels, i, loop.jumpTo, end));
+                    mv.visitLabel(found);
+                    this.store(mv, loop.slot);
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.counterSlot));
+                    mv.visitInsn(LCONST_1);
+                    mv.visitInsn(LADD);
+                    this.store(mv, loop.counterSlot);
+                }
+                // bounds are truncated to whole numbers like the interpreter does
+                case Instruction.For loop -> {
+                    int[] slots = {loop.counterSlot, loop.endSlot, loop.stepSlot};
+                    for (int j = 0; j < 3; j++) {
+                        this.expression(mv, this.trees[i][j]);
+                        if (this.trees[i][j].kind != LONG) {
+                            mv.visitInsn(D2L);
+                        }
+                        this.store(mv, slots[j]);
+                    }
+                    this.range(mv, loop.counterSlot, loop.endSlot, loop.stepSlot, this.target(labels, i, loop.jumpTo, end));
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.counterSlot));
+                    this.store(mv, loop.slot);
+                }
+                // checked before stepping, since stepping past the end can overflow and wrap back into range
+                case Instruction.ForNext loop -> {
+                    Label done = new Label();
+                    this.next(mv, loop.counterSlot, loop.endSlot, loop.stepSlot, done);
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.counterSlot));
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.stepSlot));
+                    mv.visitInsn(LADD);
+                    this.store(mv, loop.counterSlot);
+                    mv.visitVarInsn(LLOAD, this.locals.get(loop.counterSlot));
+                    this.store(mv, loop.slot);
+                    mv.visitJumpInsn(GOTO, this.target(labels, i, loop.jumpTo, end));
+                    mv.visitLabel(done);
+                }
+                case Instruction.If cond -> this.condition(mv, cond.cmp, this.trees[i][0], this.trees[i][1],
+                        this.target(labels, i, cond.jumpTo, end));
+                case Instruction.Jump jump -> mv.visitJumpInsn(GOTO, this.target(labels, i, jump.jumpTo, end));
+                case Instruction.Switch sw -> this.dispatch(mv, sw, this.trees[i][0], labels, i, end);
+                case Instruction.SetScore ignored -> {
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    for (int j = 0; j < 2; j++) {
+                        this.expression(mv, this.trees[i][j]);
+                        this.stringify(mv, this.trees[i][j].kind);
+                    }
+                    this.expression(mv, this.trees[i][2]);
+                    if (this.trees[i][2].kind == DOUBLE) {
+                        mv.visitInsn(D2L);
+                    }
+                    mv.visitMethodInsn(INVOKESTATIC, SELF, "setScore", "(" + CONTEXT + "Ljava/lang/String;Ljava/lang/String;J)Z", false);
+                    Label ok = new Label();
+                    mv.visitJumpInsn(IFNE, ok);
+                    this.sync(mv);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                    mv.visitLabel(ok);
+                }
+                case Instruction.Return ignored -> {
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    mv.visitVarInsn(ALOAD, L_FRAME);
+                    if (this.trees[i] == null) {
+                        mv.visitMethodInsn(INVOKESTATIC, SELF, "returnNone", "(" + CONTEXT + FRAME + ")V", false);
+                    }
+                    else {
+                        Node tree = this.trees[i][0];
+                        this.expression(mv, tree);
+                        switch (tree.kind) {
+                            case LONG -> mv.visitMethodInsn(INVOKESTATIC, SELF, "returnLong", "(" + CONTEXT + FRAME + "J)V", false);
+                            case DOUBLE -> mv.visitMethodInsn(INVOKESTATIC, SELF, "returnDouble", "(" + CONTEXT + FRAME + "D)V", false);
+                            default -> mv.visitMethodInsn(INVOKESTATIC, SELF, "returnString", "(" + CONTEXT + FRAME +
+                                    "Ljava/lang/String;)V", false);
+                        }
+                    }
+                    this.sync(mv);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                }
+                case Instruction.Fetch fetch -> {
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    mv.visitLdcInsn(fetch.type);
+                    switch (this.kinds.get(fetch.slot)) {
+                        case LONG -> mv.visitMethodInsn(INVOKESTATIC, SELF, "fetchLong", "(" + CONTEXT + "I)J", false);
+                        case DOUBLE, FLOAT -> mv.visitMethodInsn(INVOKESTATIC, SELF, "fetchDouble", "(" + CONTEXT + "I)D", false);
+                        default -> mv.visitMethodInsn(INVOKESTATIC, SELF, "fetchString", "(" + CONTEXT + "I)Ljava/lang/String;", false);
+                    }
+                    this.store(mv, fetch.slot);
+                }
+                case Instruction.TailInvoke call -> {
+                    this.sync(mv);
+                    mv.visitVarInsn(ALOAD, L_ALIAS);
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    mv.visitVarInsn(ALOAD, L_FRAME);
+                    mv.visitLdcInsn(call.callee);
+                    this.operands(mv, this.trees[i]);
+                    mv.visitLdcInsn(call.type);
+                    mv.visitMethodInsn(INVOKESTATIC, SELF, "tailInvoke", "(L" + ALIAS + ";" + CONTEXT + FRAME +
+                            "Ljava/lang/String;[L" + OPERATOR + ";I)L" + OPERATOR + ";", false);
+                    Label ok = new Label(), called = new Label();
+                    mv.visitInsn(DUP);
+                    mv.visitJumpInsn(IFNONNULL, ok);
+                    mv.visitInsn(POP);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                    mv.visitLabel(ok);
+                    mv.visitInsn(DUP);
+                    mv.visitMethodInsn(INVOKESTATIC, SELF, "restarted", "(L" + OPERATOR + ";)Z", false);
+                    mv.visitJumpInsn(IFEQ, called);
+                    mv.visitInsn(POP);
+                    mv.visitJumpInsn(GOTO, restart);
+                    mv.visitLabel(called);
+                    this.result(mv, call, exit);
+                }
+                case Instruction.Invoke call -> {
+                    // arguments are boxed into operators for the callee's frame, and the result is converted back here
+                    this.sync(mv);
+                    mv.visitVarInsn(ALOAD, L_ALIAS);
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    mv.visitLdcInsn(call.callee);
+                    this.operands(mv, this.trees[i]);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, ALIAS, "call", "(" + CONTEXT + "Ljava/lang/String;[L" + OPERATOR + ";)L" +
+                            OPERATOR + ";", false);
+                    Label ok = new Label();
+                    mv.visitInsn(DUP);
+                    mv.visitJumpInsn(IFNONNULL, ok);
+                    mv.visitInsn(POP);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                    mv.visitLabel(ok);
+                    this.result(mv, call, exit);
+                }
+                case Instruction.TailCall call -> {
+                    // self calls with nothing after them either start over or run normally, see Instruction.TailCall
+                    this.sync(mv);
+                    mv.visitVarInsn(ALOAD, L_ALIAS);
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    mv.visitVarInsn(ALOAD, L_FRAME);
+                    this.render(mv, this.templates.get(i));
+                    mv.visitLdcInsn(call.callee);
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitFieldInsn(GETFIELD, this.className, "caches", CACHES);
+                    mv.visitLdcInsn(i);
+                    mv.visitInsn(AALOAD);
+                    mv.visitMethodInsn(INVOKESTATIC, SELF, "tailCall", "(L" + ALIAS + ";" + CONTEXT + FRAME +
+                            "Ljava/lang/String;Ljava/lang/String;" + CACHE + ")I", false);
+                    Label called = new Label(), ok = new Label();
+                    mv.visitInsn(DUP);
+                    mv.visitJumpInsn(IFNE, called);
+                    mv.visitInsn(POP);
+                    mv.visitJumpInsn(GOTO, restart);
+                    mv.visitLabel(called);
+                    mv.visitInsn(ICONST_M1);
+                    mv.visitJumpInsn(IF_ICMPEQ, ok);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                    mv.visitLabel(ok);
+                    this.reload(mv, exit);
+                }
+                case Instruction.Command command -> {
+                    // flush the instruction count so nested aliases see it, then reload afterward to account for theirs
+                    this.sync(mv);
+                    mv.visitVarInsn(ALOAD, L_ALIAS);
+                    mv.visitVarInsn(ALOAD, L_CONTEXT);
+                    this.render(mv, this.templates.get(i));
+                    if (command instanceof Instruction.Call call) {
+                        mv.visitLdcInsn(call.callee);
+                    }
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitFieldInsn(GETFIELD, this.className, "caches", CACHES);
+                    mv.visitLdcInsn(i);
+                    mv.visitInsn(AALOAD);
+                    if (command instanceof Instruction.Call) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, ALIAS, "executeCall", "(" + CONTEXT + "Ljava/lang/String;Ljava/lang/String;" +
+                                CACHE + ")Z", false);
+                    }
+                    else {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, ALIAS, "executeCommand", "(" + CONTEXT + "Ljava/lang/String;" + CACHE + ")Z", false);
+                    }
+                    Label ok = new Label();
+                    mv.visitJumpInsn(IFNE, ok);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                    mv.visitLabel(ok);
+                    this.reload(mv, exit);
+                }
+                default -> throw new IllegalStateException("unsupported instruction " + instruction);
+            }
+        }
+        // epilogues; both defer to the same exit handling as the interpreter
+        mv.visitLabel(end);
+        this.sync(mv);
+        mv.visitVarInsn(ALOAD, L_ALIAS);
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitInsn(ICONST_1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ALIAS, "finish", "(" + CONTEXT + "Z)I", false);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(exit);
+        this.sync(mv);
+        mv.visitVarInsn(ALOAD, L_ALIAS);
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitInsn(ICONST_0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ALIAS, "finish", "(" + CONTEXT + "Z)I", false);
+        mv.visitInsn(IRETURN);
+    }
+
+    /**
+     * Boxes evaluated [call] arguments into an operator array.
+     */
+    private void operands(MethodVisitor mv, Node[] trees) {
+        mv.visitLdcInsn(trees.length);
+        mv.visitTypeInsn(ANEWARRAY, OPERATOR);
+        for (int j = 0; j < trees.length; j++) {
+            Node tree = trees[j];
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(j);
+            this.expression(mv, tree);
+            String type = tree.kind == LONG ? "J" : tree.kind == DOUBLE ? "D" : "Ljava/lang/String;";
+            mv.visitMethodInsn(INVOKESTATIC, SELF, "operand", "(" + type + ")L" + OPERATOR + ";", false);
+            mv.visitInsn(AASTORE);
+        }
+    }
+
+    /**
+     * Converts and stores the value a [call] got back, which is on the stack.
+     */
+    private void result(MethodVisitor mv, Instruction.Invoke call, Label exit) {
+        mv.visitLdcInsn(call.type);
+        switch (this.kinds.get(call.slot)) {
+            case LONG -> mv.visitMethodInsn(INVOKESTATIC, SELF, "resultLong", "(L" + OPERATOR + ";I)J", false);
+            case DOUBLE, FLOAT -> mv.visitMethodInsn(INVOKESTATIC, SELF, "resultDouble", "(L" + OPERATOR + ";I)D", false);
+            default -> mv.visitMethodInsn(INVOKESTATIC, SELF, "resultString", "(L" + OPERATOR + ";I)Ljava/lang/String;", false);
+        }
+        this.store(mv, call.slot);
+        this.reload(mv, exit);
+    }
+
+    /**
+     * Reloads the instruction count after running other aliases, which may have used some, and exits if they went past
+     * the max recursion depth.
+     */
+    private void reload(MethodVisitor mv, Label exit) {
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "remaining", "(" + CONTEXT + ")J", false);
+        mv.visitInsn(DUP2);
+        mv.visitVarInsn(LSTORE, L_LEFT);
+        mv.visitVarInsn(LSTORE, L_MARK);
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "recursionExceeded", "(" + CONTEXT + ")Z", false);
+        mv.visitJumpInsn(IFNE, exit);
+    }
+
+    /**
+     * Resolves a jump target the same way the interpreter does: negative is a no-op, past the end terminates.
+     */
+    private Label target(Label[] labels, int index, int jumpTo, Label end) {
+        if (jumpTo < 0) {
+            return index + 1 < labels.length ? labels[index + 1] : end;
+        }
+        return jumpTo < labels.length ? labels[jumpTo] : end;
+    }
+
+    /**
+     * Jumps to the given label unless a counted loop's counter is in range, see {@link Instruction.For#inRange}.
+     */
+    private void range(MethodVisitor mv, int counter, int end, int step, Label out) {
+        Label down = new Label(), in = new Label();
+        mv.visitVarInsn(LLOAD, this.locals.get(step));
+        mv.visitInsn(LCONST_0);
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFLE, down);
+        mv.visitVarInsn(LLOAD, this.locals.get(counter));
+        mv.visitVarInsn(LLOAD, this.locals.get(end));
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFGT, out);
+        mv.visitJumpInsn(GOTO, in);
+        mv.visitLabel(down);
+        mv.visitVarInsn(LLOAD, this.locals.get(step));
+        mv.visitInsn(LCONST_0);
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFEQ, out);
+        mv.visitVarInsn(LLOAD, this.locals.get(counter));
+        mv.visitVarInsn(LLOAD, this.locals.get(end));
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFLT, out);
+        mv.visitLabel(in);
+    }
+
+    /**
+     * Jumps to the given label unless a counted loop runs again after stepping its counter, see
+     * {@link Instruction.For#hasNext}. The step is never 0 here, since the loop wouldn't have started.
+     */
+    private void next(MethodVisitor mv, int counter, int end, int step, Label out) {
+        Label down = new Label(), compare = new Label();
+        mv.visitVarInsn(LLOAD, this.locals.get(step));
+        mv.visitInsn(LCONST_0);
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFLT, down);
+        mv.visitVarInsn(LLOAD, this.locals.get(end));
+        mv.visitVarInsn(LLOAD, this.locals.get(counter));
+        mv.visitInsn(LSUB);
+        mv.visitVarInsn(LLOAD, this.locals.get(step));
+        mv.visitJumpInsn(GOTO, compare);
+        mv.visitLabel(down);
+        mv.visitVarInsn(LLOAD, this.locals.get(counter));
+        mv.visitVarInsn(LLOAD, this.locals.get(end));
+        mv.visitInsn(LSUB);
+        mv.visitVarInsn(LLOAD, this.locals.get(step));
+        mv.visitInsn(LNEG);
+        mv.visitLabel(compare);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "compareUnsigned", "(JJ)I", false);
+        mv.visitJumpInsn(IFLT, out);
+    }
+
+    /**
+     * Adds instructions executed since the last sync to the command source.
+     */
+    private void sync(MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, L_CONTEXT);
+        mv.visitVarInsn(LLOAD, L_MARK);
+        mv.visitVarInsn(LLOAD, L_LEFT);
+        mv.visitInsn(LSUB);
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "addInstructions", "(" + CONTEXT + "J)V", false);
+    }
+
+    private void store(MethodVisitor mv, int var) {
+        int kind = this.kinds.get(var);
+        mv.visitVarInsn(kind == LONG ? LSTORE : kind == STRING ? ASTORE : DSTORE, this.locals.get(var));
+        Integer flag = this.flags.get(var);
+        if (flag != null) {
+            mv.visitInsn(ICONST_1);
+            mv.visitVarInsn(ISTORE, flag);
+        }
+    }
+
+    private String nameOf(int slot) {
+        for (Map.Entry<String, Integer> e : this.layout.entrySet()) {
+            if (e.getValue() == slot) {
+                return e.getKey();
+            }
+        }
+        return "";
+    }
+
+    private void expression(MethodVisitor mv, Node node) {
+        if (node.token instanceof Intrinsic.Call call) {
+            this.call(mv, call.intrinsic(), node);
+            return;
+        }
+        if (node.left == null) {
+            if (node.var) {
+                int kind = this.kinds.get((Integer) node.token);
+                mv.visitVarInsn(kind == LONG ? LLOAD : kind == STRING ? ALOAD : DLOAD, this.locals.get((Integer) node.token));
+            }
+            else {
+                mv.visitLdcInsn(node.token);
+            }
+            return;
+        }
+        String op = (String) node.token;
+        if (node.kind == STRING) {
+            this.expression(mv, node.left);
+            this.stringify(mv, node.left.kind);
+            this.expression(mv, node.right);
+            this.stringify(mv, node.right.kind);
+            mv.visitMethodInsn(INVOKESTATIC, SELF, "concat", "(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;", false);
+        }
+        else if (node.kind == LONG) {
+            this.expression(mv, node.left);
+            this.expression(mv, node.right);
+            mv.visitInsn(switch (op) {
+                case "+" -> LADD;
+                case "-" -> LSUB;
+                case "*" -> LMUL;
+                case "/" -> LDIV;
+                default -> LREM;
+            });
+        }
+        else {
+            this.expression(mv, node.left);
+            if (node.left.kind == LONG) {
+                mv.visitInsn(L2D);
+            }
+            this.expression(mv, node.right);
+            if (node.right.kind == LONG) {
+                mv.visitInsn(L2D);
+            }
+            if ("^".equals(op)) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false);
+            }
+            else {
+                mv.visitInsn(switch (op) {
+                    case "+" -> DADD;
+                    case "-" -> DSUB;
+                    case "*" -> DMUL;
+                    case "/" -> DDIV;
+                    default -> DREM;
+                });
+            }
+        }
+    }
+
+    /**
+     * Calls an intrinsic directly, through java.lang.Math where possible.
+     */
+    private void call(MethodVisitor mv, Intrinsic intrinsic, Node node) {
+        Node[] args = node.args;
+        switch (intrinsic) {
+            case MIN, MAX -> {
+                for (Node arg : args) {
+                    this.expression(mv, arg);
+                    if (node.kind == DOUBLE && arg.kind == LONG) {
+                        mv.visitInsn(L2D);
+                    }
+                }
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", intrinsic.name, node.kind == LONG ? "(JJ)J" : "(DD)D", false);
+            }
+            case ABS -> {
+                this.expression(mv, args[0]);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs", node.kind == LONG ? "(J)J" : "(D)D", false);
+            }
+            case SQRT -> {
+                this.expression(mv, args[0]);
+                if (args[0].kind == LONG) {
+                    mv.visitInsn(L2D);
+                }
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "sqrt", "(D)D", false);
+            }
+            case FLOOR -> {
+                this.expression(mv, args[0]);
+                if (args[0].kind != LONG) {
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
+                    mv.visitInsn(D2L);
+                }
+            }
+            case LENGTH -> {
+                this.expression(mv, args[0]);
+                mv.visitMethodInsn(INVOKESTATIC, INTRINSIC, "length", "(Ljava/lang/String;)J", false);
+            }
+            case SUBSTRING -> {
+                this.expression(mv, args[0]);
+                this.expression(mv, args[1]);
+                if (args.length > 2) {
+                    this.expression(mv, args[2]);
+                }
+                else {
+                    mv.visitLdcInsn(Long.MAX_VALUE);
+                }
+                mv.visitMethodInsn(INVOKESTATIC, INTRINSIC, "substring", "(Ljava/lang/String;JJ)Ljava/lang/String;", false);
+            }
+            case SCORE -> {
+                mv.visitVarInsn(ALOAD, L_FRAME);
+                this.expression(mv, args[0]);
+                this.expression(mv, args[1]);
+                mv.visitMethodInsn(INVOKESTATIC, INTRINSIC, "score", "(" + FRAME + "Ljava/lang/String;Ljava/lang/String;)J", false);
+            }
+        }
+    }
+
+    private void stringify(MethodVisitor mv, int kind) {
+        if (kind == LONG) {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(J)Ljava/lang/String;", false);
+        }
+        else if (kind == DOUBLE) {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(D)Ljava/lang/String;", false);
+        }
+    }
+
+    /**
+     * Jumps to the given label if the condition fails. Strings only ever compare for equality, regardless of operator.
+     */
+    private void condition(MethodVisitor mv, String cmp, Node left, Node right, Label fail) {
+        if (left.kind == STRING || right.kind == STRING) {
+            this.expression(mv, left);
+            this.stringify(mv, left.kind);
+            this.expression(mv, right);
+            this.stringify(mv, right.kind);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+            mv.visitJumpInsn(IFEQ, fail);
+            return;
+        }
+        boolean isLong = left.kind == LONG && right.kind == LONG;
+        this.expression(mv, left);
+        if (!isLong && left.kind == LONG) {
+            mv.visitInsn(L2D);
+        }
+        this.expression(mv, right);
+        if (!isLong && right.kind == LONG) {
+            mv.visitInsn(L2D);
+        }
+        // pick the NaN bias so that any comparison involving NaN fails
+        if (isLong) {
+            mv.visitInsn(LCMP);
+        }
+        else {
+            mv.visitInsn("<".equals(cmp) || "<=".equals(cmp) ? DCMPG : DCMPL);
+        }
+        switch (cmp) {
+            case "<" -> mv.visitJumpInsn(IFGE, fail);
+            case ">" -> mv.visitJumpInsn(IFLE, fail);
+            case "<=" -> mv.visitJumpInsn(IFGT, fail);
+            case ">=" -> mv.visitJumpInsn(IFLT, fail);
+            default -> mv.visitJumpInsn(IFNE, fail);
+        }
+    }
+
+    /**
+     * Switches on a bound selection with a tableswitch over its option index, and on anything else with a lookupswitch over
+     * the hash of the rendered value followed by equality checks, the same way javac compiles a switch on a string.
+     */
+    private void dispatch(MethodVisitor mv, Instruction.Switch sw, Node subject, Label[] labels, int index, Label end) {
+        Label fallback = this.target(labels, index, sw.defaultTarget, end);
+        Integer ordinal = sw.ordinalTargets != null ? this.ordinals.get(sw.slot) : null;
+        if (ordinal != null && sw.ordinalTargets.length > 0) {
+            Label[] table = new Label[sw.ordinalTargets.length];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = this.target(labels, index, sw.ordinalTargets[i], end);
+            }
+            mv.visitVarInsn(ILOAD, ordinal);
+            mv.visitTableSwitchInsn(0, table.length - 1, fallback, table);
+            return;
+        }
+        TreeMap<Integer, List<Map.Entry<String, Integer>>> buckets = new TreeMap<>();
+        for (Map.Entry<String, Integer> e : sw.cases.entrySet()) {
+            buckets.computeIfAbsent(e.getKey().hashCode(), k -> new ArrayList<>()).add(e);
+        }
+        if (buckets.isEmpty()) {
+            mv.visitJumpInsn(GOTO, fallback);
+            return;
+        }
+        this.expression(mv, subject);
+        if (subject.kind == STRING) {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+        }
+        else {
+            this.stringify(mv, subject.kind);
+        }
+        mv.visitVarInsn(ASTORE, this.key);
+        mv.visitVarInsn(ALOAD, this.key);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+        int[] hashes = buckets.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Label[] bucketLabels = new Label[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            bucketLabels[i] = new Label();
+        }
+        mv.visitLookupSwitchInsn(fallback, hashes, bucketLabels);
+        for (int i = 0; i < hashes.length; i++) {
+            mv.visitLabel(bucketLabels[i]);
+            for (Map.Entry<String, Integer> e : buckets.get(hashes[i])) {
+                mv.visitVarInsn(ALOAD, this.key);
+                mv.visitLdcInsn(e.getKey());
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                mv.visitJumpInsn(IFNE, this.target(labels, index, e.getValue(), end));
+            }
+            mv.visitJumpInsn(GOTO, fallback);
+        }
+    }
+
+    /**
+     * Builds a command string from its template, leaving placeholders for variables that haven't been assigned yet.
+     */
+    private void render(MethodVisitor mv, List<Object> template) {
+        if (template.size() == 1) {
+            mv.visitLdcInsn(template.getFirst());
+            return;
+        }
+        int capacity = 16;
+        for (Object o : template) {
+            capacity += o instanceof String s ? s.length() : 8;
+        }
+        mv.visitTypeInsn(NEW, BUILDER);
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn(capacity);
+        mv.visitMethodInsn(INVOKESPECIAL, BUILDER, "<init>", "(I)V", false);
+        for (Object o : template) {
+            if (o instanceof String s) {
+                if (!s.isEmpty()) {
+                    mv.visitLdcInsn(s);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)L" + BUILDER + ";", false);
+                }
+                continue;
+            }
+            int var = (Integer) ((Node) o).token;
+            int kind = this.kinds.get(var);
+            Integer flag = this.flags.get(var);
+            Label placeholder = new Label(), done = new Label();
+            if (flag != null) {
+                mv.visitVarInsn(ILOAD, flag);
+                mv.visitJumpInsn(IFEQ, placeholder);
+            }
+            switch (kind) {
+                case LONG -> {
+                    mv.visitVarInsn(LLOAD, this.locals.get(var));
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(J)L" + BUILDER + ";", false);
+                }
+                case DOUBLE -> {
+                    mv.visitVarInsn(DLOAD, this.locals.get(var));
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(D)L" + BUILDER + ";", false);
+                }
+                case FLOAT -> {
+                    mv.visitVarInsn(DLOAD, this.locals.get(var));
+                    mv.visitInsn(D2F);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(F)L" + BUILDER + ";", false);
+                }
+                default -> {
+                    mv.visitVarInsn(ALOAD, this.locals.get(var));
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)L" + BUILDER + ";", false);
+                }
+            }
+            if (flag != null) {
+                mv.visitJumpInsn(GOTO, done);
+                mv.visitLabel(placeholder);
+                mv.visitLdcInsn("{$" + this.nameOf(var) + "}");
+                mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)L" + BUILDER + ";", false);
+                mv.visitLabel(done);
+            }
+        }
+        mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER, "toString", "()Ljava/lang/String;", false);
+    }
+
+    // runtime hooks, called from generated code
+
+    public static long remaining(CommandContext<ServerCommandSource> context) {
+        int limit = ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val();
+        return limit == -1 ? Long.MAX_VALUE : limit - ((AliasedCommandSource) context.getSource()).technicalToolbox$getInstructionCount();
+    }
+
+    public static void addInstructions(CommandContext<ServerCommandSource> context, long count) {
+        ((AliasedCommandSource) context.getSource()).technicalToolbox$AddToInstructionCount((int) count);
+    }
+
+    public static boolean recursionExceeded(CommandContext<ServerCommandSource> context) {
+        CallStack chain = CallStack.current();
+        return chain != null && chain.exceeded();
+    }
+
+    public static long argLong(Frame frame, int slot) {
+        return frame.getLong(slot);
+    }
+
+    public static double argDouble(Frame frame, int slot) {
+        return frame.getDouble(slot);
+    }
+
+    public static String argString(Frame frame, int slot) {
+        return frame.render(slot);
+    }
+
+    public static boolean setScore(CommandContext<ServerCommandSource> context, String holder, String objective, long value) {
+        return Instruction.SetScore.set(context, holder, objective, value);
+    }
+
+    /**
+     * @return uuid of the entity at a position in a resolved entity argument, or null past the end
+     */
+    public static String element(Frame frame, int slot, long index) {
+        Entity entity = Instruction.ForEach.element(frame.resolved(slot), index);
+        return entity != null ? entity.getUuidAsString() : null;
+    }
+
+    public static int argOrdinal(Frame frame, int slot) {
+        return frame.ordinal(slot);
+    }
+
+    private static Operator returnValue(CommandContext<ServerCommandSource> context) {
+        Operator o = ((CommandSourceModifier) context.getSource()).technicalToolbox$getReturnValue();
+        return o == null ? new Operator.NumberOperator(0) : o;
+    }
+
+    public static long fetchLong(CommandContext<ServerCommandSource> context, int type) {
+        return resultLong(returnValue(context), type);
+    }
+
+    public static double fetchDouble(CommandContext<ServerCommandSource> context, int type) {
+        return resultDouble(returnValue(context), type);
+    }
+
+    public static String fetchString(CommandContext<ServerCommandSource> context, int type) {
+        return resultString(returnValue(context), type);
+    }
+
+    public static long resultLong(Operator result, int type) {
+        return ((Number) result.toType(type)).longValue();
+    }
+
+    public static double resultDouble(Operator result, int type) {
+        return ((Number) result.toType(type)).doubleValue();
+    }
+
+    public static String resultString(Operator result, int type) {
+        return String.valueOf(result.toType(type));
+    }
+
+    public static Operator operand(long value) {
+        return new Operator.NumberOperator(value);
+    }
+
+    public static Operator operand(double value) {
+        return new Operator.NumberOperator(value);
+    }
+
+    public static Operator operand(String value) {
+        return new Operator.StringOperator(value);
+    }
+
+    public static int tailCall(AliasedCommand alias, CommandContext<ServerCommandSource> context, Frame frame, String command,
+                               String callee, CommandParseCache cache) {
+        if (Instruction.TailCall.enter(alias, context, frame, command, callee)) {
+            return 0;
+        }
+        return alias.executeCall(context, command, callee, cache) ? -1 : -2;
+    }
+
+    /**
+     * @return {@link #RESTART} if the program should start over, the value returned by a normal call, or null to stop
+     */
+    public static Operator tailInvoke(AliasedCommand alias, CommandContext<ServerCommandSource> context, Frame frame,
+                                      String callee, Operator[] values, int type) {
+        return switch (Instruction.TailInvoke.enter(alias, context, frame, callee, values, type)) {
+            case 0 -> RESTART;
+            case -2 -> null;
+            default -> alias.call(context, callee, values);
+        };
+    }
+
+    public static boolean restarted(Operator result) {
+        return result == RESTART;
+    }
+
+    public static void returnLong(CommandContext<ServerCommandSource> context, Frame frame, long value) {
+        Instruction.Return.set(context, frame, new Operator.NumberOperator(value));
+    }
+
+    public static void returnDouble(CommandContext<ServerCommandSource> context, Frame frame, double value) {
+        Instruction.Return.set(context, frame, new Operator.NumberOperator(value));
+    }
+
+    public static void returnString(CommandContext<ServerCommandSource> context, Frame frame, String value) {
+        Instruction.Return.set(context, frame, new Operator.StringOperator(value));
+    }
+
+    public static void returnNone(CommandContext<ServerCommandSource> context, Frame frame) {
+        Instruction.Return.set(context, frame, null);
+    }
+
+    public static String concat(String left, String right) {
+        return left + right;
+    }
+
+}
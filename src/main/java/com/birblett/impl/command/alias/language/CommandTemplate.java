@@ -0,0 +1,68 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * A command line split into literal text and variable placeholders at compile time. Rendering is a single pass into a
+ * pre-sized StringBuilder; placeholders for variables that haven't been assigned yet are left as-is, and lines without
+ * any placeholders are returned without rendering at all.
+ */
+public class CommandTemplate {
+
+    // literals.length is always slots.length + 1; placeholder i sits between literals i and i + 1
+    public final String[] literals;
+    public final int[] slots;
+    public final String[] names;
+    private final int capacity;
+
+    /**
+     * @param command command line containing {$name} placeholders
+     * @param slots slot layout; names not in it yet are added
+     */
+    public CommandTemplate(String command, Map<String, Integer> slots) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Matcher m = AliasConstants.PLACEHOLDER.matcher(command);
+        int start = 0;
+        while (m.find()) {
+            literals.add(command.substring(start, m.start()));
+            names.add(m.group(1));
+            start = m.end();
+        }
+        literals.add(command.substring(start));
+        this.literals = literals.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.slots = new int[this.names.length];
+        for (int i = 0; i < this.names.length; i++) {
+            this.slots[i] = slots.computeIfAbsent(this.names[i], k -> slots.size());
+        }
+        this.capacity = command.length() + 8 * this.slots.length;
+    }
+
+    public boolean isConstant() {
+        return this.slots.length == 0;
+    }
+
+    public String render(Frame frame) {
+        if (this.isConstant()) {
+            return this.literals[0];
+        }
+        StringBuilder builder = new StringBuilder(this.capacity);
+        builder.append(this.literals[0]);
+        for (int i = 0; i < this.slots.length; i++) {
+            String value = frame.render(this.slots[i]);
+            if (value != null) {
+                builder.append(value);
+            }
+            else {
+                builder.append("{$").append(this.names[i]).append('}');
+            }
+            builder.append(this.literals[i + 1]);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Executable form of a parsed expression. The postfix queue produced by {@link ExpressionParser} is flattened into
+ * parallel opcode/operand arrays and evaluated on the operand stack of a {@link Frame}, which keeps longs, doubles and
+ * strings in separate arrays so that numeric expressions don't allocate anything once the frame is warmed up.
+ * <br><br>
+ * Semantics match the original {@link Operator} based evaluation: long op long stays long, anything involving a double
+ * is a double, ^ is always a double, and any operation with a string operand concatenates. {@link Intrinsic} calls
+ * replace their arguments on the stack with the result.
+ */
+public class Expression {
+
+    public static final int CONST_LONG = 0, CONST_DOUBLE = 1, CONST_STRING = 2, LOAD = 3, ADD = 4, SUB = 5, MUL = 6, DIV = 7,
+            POW = 8, MOD = 9, CALL = 10;
+    public static final int EQ = 0, LT = 1, GT = 2, LE = 3, GE = 4;
+
+    private final int[] ops;
+    private final int[] args;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+    private final Intrinsic.Call[] calls;
+    private final int depth;
+
+    /**
+     * @param post postfix queue with variables already resolved to slots via {@link ExpressionParser#resolve}
+     */
+    public Expression(Queue<Object> post) {
+        this.ops = new int[post.size()];
+        this.args = new int[post.size()];
+        List<Long> longs = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        List<Intrinsic.Call> calls = new ArrayList<>();
+        int pc = 0, size = 0, depth = 0;
+        for (Object o : post) {
+            switch (o) {
+                case String op -> {
+                    this.ops[pc] = opcode(op);
+                    size--;
+                }
+                case Integer slot -> {
+                    this.ops[pc] = LOAD;
+                    this.args[pc] = slot;
+                    size++;
+                }
+                case Operator.NumberOperator n when n.getValue() instanceof Long l -> {
+                    this.ops[pc] = CONST_LONG;
+                    this.args[pc] = longs.size();
+                    longs.add(l);
+                    size++;
+                }
+                case Operator.NumberOperator n -> {
+                    this.ops[pc] = CONST_DOUBLE;
+                    this.args[pc] = doubles.size();
+                    doubles.add(n.getDoubleValue());
+                    size++;
+                }
+                case Operator.StringOperator s -> {
+                    this.ops[pc] = CONST_STRING;
+                    this.args[pc] = strings.size();
+                    strings.add(s.str());
+                    size++;
+                }
+                case Intrinsic.Call call -> {
+                    this.ops[pc] = CALL;
+                    this.args[pc] = calls.size();
+                    calls.add(call);
+                    size -= call.argc() - 1;
+                }
+                default -> throw new IllegalArgumentException("unexpected token " + o);
+            }
+            depth = Math.max(depth, size);
+            pc++;
+        }
+        this.longs = longs.stream().mapToLong(Long::longValue).toArray();
+        this.doubles = doubles.stream().mapToDouble(Double::doubleValue).toArray();
+        this.strings = strings.toArray(new String[0]);
+        this.calls = calls.toArray(new Intrinsic.Call[0]);
+        this.depth = depth;
+    }
+
+    public static int opcode(String op) {
+        return switch (op) {
+            case "+" -> ADD;
+            case "-" -> SUB;
+            case "*" -> MUL;
+            case "/" -> DIV;
+            case "^" -> POW;
+            case "%" -> MOD;
+            default -> throw new IllegalArgumentException("unknown operator " + op);
+        };
+    }
+
+    public static int comparator(String cmp) {
+        return switch (cmp) {
+            case "<" -> LT;
+            case ">" -> GT;
+            case "<=" -> LE;
+            case ">=" -> GE;
+            default -> EQ;
+        };
+    }
+
+    /**
+     * Evaluates the expression, leaving the result on the frame's operand stack.
+     * @param frame frame to read variables from
+     * @param base stack index to place the result at; anything above it may be overwritten
+     * @return kind of the result, one of {@link Frame#LONG}, {@link Frame#DOUBLE} or {@link Frame#STRING}
+     */
+    public byte evaluate(Frame frame, int base) {
+        frame.ensureStack(base + this.depth);
+        byte[] kinds = frame.stackKinds;
+        long[] ls = frame.stackLongs;
+        double[] ds = frame.stackDoubles;
+        String[] ss = frame.stackStrings;
+        int sp = base;
+        for (int pc = 0; pc < this.ops.length; pc++) {
+            int arg = this.args[pc];
+            switch (this.ops[pc]) {
+                case CONST_LONG -> {
+                    kinds[sp] = Frame.LONG;
+                    ls[sp++] = this.longs[arg];
+                }
+                case CONST_DOUBLE -> {
+                    kinds[sp] = Frame.DOUBLE;
+                    ds[sp++] = this.doubles[arg];
+                }
+                case CONST_STRING -> {
+                    kinds[sp] = Frame.STRING;
+                    ss[sp++] = this.strings[arg];
+                }
+                case LOAD -> frame.push(arg, sp++);
+                case CALL -> {
+                    Intrinsic.Call call = this.calls[arg];
+                    sp -= call.argc();
+                    call.intrinsic().apply(frame, sp++, call.argc());
+                }
+                default -> {
+                    sp--;
+                    binary(this.ops[pc], frame, sp - 1, sp);
+                }
+            }
+        }
+        return kinds[base];
+    }
+
+    /**
+     * Applies an operator to two adjacent stack entries, storing the result in the lower one.
+     */
+    private static void binary(int op, Frame frame, int a, int b) {
+        byte[] kinds = frame.stackKinds;
+        long[] ls = frame.stackLongs;
+        double[] ds = frame.stackDoubles;
+        if (kinds[a] == Frame.STRING || kinds[b] == Frame.STRING) {
+            frame.stackStrings[a] = frame.renderStack(a) + frame.renderStack(b);
+            kinds[a] = Frame.STRING;
+        }
+        else if (kinds[a] == Frame.LONG && kinds[b] == Frame.LONG && op != POW) {
+            long l = ls[a], r = ls[b];
+            ls[a] = switch (op) {
+                case ADD -> l + r;
+                case SUB -> l - r;
+                case MUL -> l * r;
+                case DIV -> l / r;
+                default -> l % r;
+            };
+        }
+        else {
+            double l = kinds[a] == Frame.LONG ? ls[a] : ds[a], r = kinds[b] == Frame.LONG ? ls[b] : ds[b];
+            ds[a] = switch (op) {
+                case ADD -> l + r;
+                case SUB -> l - r;
+                case MUL -> l * r;
+                case DIV -> l / r;
+                case POW -> Math.pow(l, r);
+                default -> l % r;
+            };
+            kinds[a] = Frame.DOUBLE;
+        }
+    }
+
+    /**
+     * Compares two evaluated results on the frame's operand stack. Strings only ever compare for equality, regardless of
+     * comparator.
+     */
+    public static boolean compare(Frame frame, int cmp, int a, int b) {
+        byte[] kinds = frame.stackKinds;
+        if (kinds[a] == Frame.STRING || kinds[b] == Frame.STRING) {
+            return frame.renderStack(a).equals(frame.renderStack(b));
+        }
+        if (kinds[a] == Frame.LONG && kinds[b] == Frame.LONG) {
+            long l = frame.stackLongs[a], r = frame.stackLongs[b];
+            return switch (cmp) {
+                case LT -> l < r;
+                case GT -> l > r;
+                case LE -> l <= r;
+                case GE -> l >= r;
+                default -> l == r;
+            };
+        }
+        double l = kinds[a] == Frame.LONG ? frame.stackLongs[a] : frame.stackDoubles[a];
+        double r = kinds[b] == Frame.LONG ? frame.stackLongs[b] : frame.stackDoubles[b];
+        return switch (cmp) {
+            case LT -> l < r;
+            case GT -> l > r;
+            case LE -> l <= r;
+            case GE -> l >= r;
+            default -> l == r;
+        };
+    }
+
+}
@@ -10,20 +10,25 @@ public interface ExpressionParser {
 
     record ExpressionOperator(String op, int precedence) {}
 
+    /**
+     * An intrinsic call whose arguments are still being parsed, at the parenthesis depth inside its argument list.
+     */
+    record ExpressionCall(Intrinsic intrinsic, int depth, int argc) {}
+
     default Integer parseExpression(String expr, Integer type, List<LinkedHashMap<String, Variable.Definition>> vars, Queue<Object> post) {
         int inferredType = type != null ? type : 0;
         Stack<ExpressionOperator> stack = new Stack<>();
         Matcher m = AliasConstants.TOKEN.matcher(expr);
-        boolean lastOperand = true;
+        Stack<ExpressionCall> calls = new Stack<>();
+        Intrinsic pendingCall = null;
+        boolean lastOperand = true, hasCall = false, hasStringLiteral = false;
         int depth = 0;
         while (m.find()) {
             String token = m.group();
             if (token.startsWith("\"") && token.endsWith("\"")) {
+                hasStringLiteral = true;
                 if (type == null) {
                     inferredType = 4;
-                } else if (type < 4) {
-                    this.error("can't forcibly coerce string type to numerical value");
-                    return null;
                 }
             }
             switch (token) {
@@ -35,14 +40,42 @@ public interface ExpressionParser {
                         return null;
                     }
                     depth++;
+                    if (pendingCall != null) {
+                        calls.push(new ExpressionCall(pendingCall, depth, 1));
+                        pendingCall = null;
+                    }
                 }
                 case ")" -> {
                     if (lastOperand) {
                         this.error("operator can't directly follow another operator");
                         return null;
                     }
+                    // a call only goes after all of its arguments have been fully emitted
+                    if (!calls.isEmpty() && calls.peek().depth == depth) {
+                        ExpressionCall call = calls.pop();
+                        while (!stack.isEmpty() && stack.peek().precedence >= 3 * depth) {
+                            post.add(stack.pop().op);
+                        }
+                        post.add(new Intrinsic.Call(call.intrinsic, call.argc));
+                    }
                     depth--;
                 }
+                case "," -> {
+                    if (calls.isEmpty() || calls.peek().depth != depth) {
+                        this.error("',' can only separate function arguments");
+                        return null;
+                    }
+                    if (lastOperand) {
+                        this.error("expected an argument before ','");
+                        return null;
+                    }
+                    while (!stack.isEmpty() && stack.peek().precedence >= 3 * depth) {
+                        post.add(stack.pop().op);
+                    }
+                    ExpressionCall call = calls.pop();
+                    calls.push(new ExpressionCall(call.intrinsic, call.depth, call.argc + 1));
+                    lastOperand = true;
+                }
                 case "+", "-", "*", "/", "^", "%" -> {
                     if (lastOperand) {
                         this.error("operator can't directly follow another operator");
@@ -61,6 +94,12 @@ public interface ExpressionParser {
                         return null;
                     }
                     Operator.NumberOperator num = Operator.NumberOperator.fromString(token);
+                    if (num == null && Intrinsic.get(token) != null && expr.substring(m.end()).stripLeading().startsWith("(")) {
+                        // arguments follow, so this is still waiting on an operand
+                        pendingCall = Intrinsic.get(token);
+                        hasCall = true;
+                        continue;
+                    }
                     if (num == null) {
                         if (token.startsWith("\"") && token.endsWith("\"")) {
                             inferredType = 4;
@@ -112,6 +151,22 @@ public interface ExpressionParser {
             this.error("mismatched parentheses in expression");
             return null;
         }
+        // calls change types in ways the token scan above can't see, so type the whole expression instead
+        if (hasCall) {
+            Integer resultType = this.inferType(post, vars);
+            if (resultType == null) {
+                return null;
+            }
+            if (type != null && type < 4 && resultType == 4) {
+                this.error("can't forcibly coerce string type to numerical value");
+                return null;
+            }
+            return type != null ? Math.max(type, resultType) : resultType;
+        }
+        if (hasStringLiteral && type != null && type < 4) {
+            this.error("can't forcibly coerce string type to numerical value");
+            return null;
+        }
         boolean hasString = false;
         boolean hasNonAddition = false;
         for (Object o : post) {
@@ -129,35 +184,67 @@ public interface ExpressionParser {
         return inferredType;
     }
 
-    default Operator evaluate(Queue<Object> post, LinkedHashMap<String, Variable> variables) {
-        Queue<Object> postfix = new LinkedList<>(post);
-        Stack<Operator> eval = new Stack<>();
-        if (!postfix.isEmpty()) {
-            while (!postfix.isEmpty()) {
-                Object o = postfix.poll();
-                if (o instanceof String tok) {
-                    if ("+-*/^%".contains(tok)) {
-                        switch (tok) {
-                            case "*", "+", "^", "%" -> eval.push(eval.pop().operation(tok, eval.pop()));
-                            case "/", "-" -> {
-                                Operator arg = eval.pop();
-                                eval.push(eval.pop().operation(tok, arg));
-                            }
+    /**
+     * Types a parsed expression bottom-up, checking the arguments of every intrinsic call.
+     * @return type of the result, or null if anything doesn't type check, after reporting the error
+     */
+    default Integer inferType(Queue<Object> post, List<LinkedHashMap<String, Variable.Definition>> vars) {
+        Deque<Integer> types = new ArrayDeque<>();
+        for (Object o : post) {
+            switch (o) {
+                case Intrinsic.Call call -> {
+                    int[] args = new int[call.argc()];
+                    for (int i = args.length - 1; i >= 0; i--) {
+                        args[i] = types.pop();
+                    }
+                    Integer result = call.intrinsic().check(args, this);
+                    if (result == null) {
+                        return null;
+                    }
+                    types.push(result);
+                }
+                case Operator.NumberOperator n -> types.push(n.getValue() instanceof Long l ? (l == l.intValue() ? 0 : 1) : n.isFloat() ? 2 : 3);
+                case Operator.StringOperator ignored -> types.push(4);
+                case String op when op.length() == 1 && "+-*/^%".contains(op) -> {
+                    int right = types.pop(), left = types.pop();
+                    if (left == 4 || right == 4) {
+                        if (!"+".equals(op)) {
+                            this.error("string type only supports concatenation");
+                            return null;
                         }
-                    } else {
-                        Variable v = variables.get(tok);
-                        if (Number.class.isAssignableFrom(v.type().type.clazz())) {
-                            eval.push(new Operator.NumberOperator((Number) v.value()));
-                        } else {
-                            eval.push(new Operator.StringOperator(v.value().toString()));
+                        types.push(4);
+                    }
+                    else {
+                        types.push("^".equals(op) ? 3 : Math.max(left, right));
+                    }
+                }
+                case String var -> {
+                    int varType = 4;
+                    for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                        if (varMap.containsKey(var)) {
+                            varType = AliasConstants.TYPE_MAP.getOrDefault(varMap.get(var).type.clazz(), 4);
+                            break;
                         }
                     }
-                } else if (o instanceof Operator op) {
-                    eval.push(op);
+                    types.push(varType);
                 }
+                default -> {}
+            }
+        }
+        return types.size() == 1 ? types.pop() : null;
+    }
+
+    /**
+     * Replaces variable names in a parsed expression with their frame slots, registering any new names.
+     */
+    default void resolve(Queue<Object> post, Map<String, Integer> slots) {
+        for (int i = post.size(); i > 0; i--) {
+            Object o = post.poll();
+            if (o instanceof String tok && !"+-*/^%".contains(tok)) {
+                o = slots.computeIfAbsent(tok, k -> slots.size());
             }
+            post.add(o);
         }
-        return eval.peek();
     }
 
     void error(String s);
@@ -0,0 +1,244 @@
+package com.birblett.impl.command.alias.language;
+
+import com.birblett.impl.command.alias.CompiledAlias;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat variable storage for a single alias execution. Every variable name is resolved to a fixed slot when the alias is
+ * compiled, and each slot holds a kind tag alongside its value, so assignments only ever write into preallocated arrays.
+ * Frames are reused between executions of the same alias.
+ */
+public class Frame {
+
+    public static final byte UNSET = 0, LONG = 1, DOUBLE = 2, FLOAT = 3, STRING = 4;
+
+    private final byte[] kinds;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    // resolved game objects behind entity and position arguments, alongside their rendered text in objects
+    private final Object[] values;
+    // operand stack used by expressions, grown on demand
+    byte[] stackKinds = new byte[8];
+    long[] stackLongs = new long[8];
+    double[] stackDoubles = new double[8];
+    String[] stackStrings = new String[8];
+    // source running the alias, for intrinsics that read game state
+    public ServerCommandSource source = null;
+    // receives the return value when the alias was run by a [call], see Instruction.Return#set
+    public Operator[] result = null;
+    // type a tail [call] converts the eventual return value to, or -1, see Instruction.TailInvoke
+    public int returnType = -1;
+    // argument tuple the return value is memoized under if the alias is pure, see AliasMemo
+    public List<Object> key = null;
+    // compiled alias the frame was allocated for, which loads new arguments into it for tail calls
+    public final CompiledAlias owner;
+
+    public Frame(int size) {
+        this(size, null);
+    }
+
+    public Frame(int size, CompiledAlias owner) {
+        this.owner = owner;
+        this.kinds = new byte[size];
+        this.longs = new long[size];
+        this.doubles = new double[size];
+        this.objects = new Object[size];
+        this.values = new Object[size];
+    }
+
+    public int size() {
+        return this.kinds.length;
+    }
+
+    /**
+     * Marks every slot as unassigned and drops held values, for reuse by another execution.
+     */
+    public void reset() {
+        for (int i = 0; i < this.kinds.length; i++) {
+            this.kinds[i] = UNSET;
+            this.longs[i] = 0;
+            this.doubles[i] = 0;
+            this.objects[i] = null;
+            this.values[i] = null;
+        }
+        Arrays.fill(this.stackStrings, null);
+        this.source = null;
+        this.result = null;
+        this.returnType = -1;
+        this.key = null;
+    }
+
+    public byte kind(int slot) {
+        return this.kinds[slot];
+    }
+
+    public long getLong(int slot) {
+        return this.kinds[slot] == LONG ? this.longs[slot] : (long) this.doubles[slot];
+    }
+
+    public double getDouble(int slot) {
+        return this.kinds[slot] == LONG ? this.longs[slot] : this.doubles[slot];
+    }
+
+    public void setLong(int slot, long value) {
+        this.kinds[slot] = LONG;
+        this.longs[slot] = value;
+        this.objects[slot] = null;
+        this.values[slot] = null;
+    }
+
+    public void setDouble(int slot, double value) {
+        this.kinds[slot] = DOUBLE;
+        this.doubles[slot] = value;
+        this.objects[slot] = null;
+        this.values[slot] = null;
+    }
+
+    /**
+     * Floats are held widened, but keep their kind so they're still rendered as floats in commands.
+     */
+    public void setFloat(int slot, float value) {
+        this.kinds[slot] = FLOAT;
+        this.doubles[slot] = value;
+        this.objects[slot] = null;
+        this.values[slot] = null;
+    }
+
+    public void setString(int slot, String value) {
+        this.kinds[slot] = STRING;
+        this.longs[slot] = -1;
+        this.objects[slot] = value;
+        this.values[slot] = null;
+    }
+
+    /**
+     * Stores a selection argument along with the index of the chosen option, so switches over it can dispatch on the
+     * index directly. Any later assignment to the slot drops the index.
+     */
+    public void setSelection(int slot, String value, int ordinal) {
+        this.kinds[slot] = STRING;
+        this.longs[slot] = ordinal;
+        this.objects[slot] = value;
+        this.values[slot] = null;
+    }
+
+    /**
+     * Stores a resolved entity or position, which reads as the given text in expressions and commands. Any later
+     * assignment to the slot drops the resolved value.
+     */
+    public void setResolved(int slot, String text, Object value) {
+        this.kinds[slot] = STRING;
+        this.longs[slot] = -1;
+        this.objects[slot] = text;
+        this.values[slot] = value;
+    }
+
+    /**
+     * @return the resolved value held in a slot, or null if it doesn't hold one
+     */
+    public Object resolved(int slot) {
+        return this.values[slot];
+    }
+
+    /**
+     * @return index of the selected option if the slot still holds a bound selection argument, otherwise -1
+     */
+    public int ordinal(int slot) {
+        return this.kinds[slot] == STRING ? (int) this.longs[slot] : -1;
+    }
+
+    /**
+     * Stores a boxed value, i.e. a command argument or fetched return value. Non-numeric values are stored as strings.
+     */
+    public void set(int slot, Object value) {
+        switch (value) {
+            case Integer i -> this.setLong(slot, i);
+            case Long l -> this.setLong(slot, l);
+            case Float f -> this.setFloat(slot, f);
+            case Number n -> this.setDouble(slot, n.doubleValue());
+            default -> this.setString(slot, String.valueOf(value));
+        }
+    }
+
+    void ensureStack(int size) {
+        if (size > this.stackKinds.length) {
+            size = Math.max(size, this.stackKinds.length * 2);
+            this.stackKinds = Arrays.copyOf(this.stackKinds, size);
+            this.stackLongs = Arrays.copyOf(this.stackLongs, size);
+            this.stackDoubles = Arrays.copyOf(this.stackDoubles, size);
+            this.stackStrings = Arrays.copyOf(this.stackStrings, size);
+        }
+    }
+
+    /**
+     * Pushes a slot onto the operand stack; floats are widened, and unassigned slots read as 0.
+     */
+    void push(int slot, int sp) {
+        switch (this.kinds[slot]) {
+            case STRING -> {
+                this.stackKinds[sp] = STRING;
+                this.stackStrings[sp] = (String) this.objects[slot];
+            }
+            case DOUBLE, FLOAT -> {
+                this.stackKinds[sp] = DOUBLE;
+                this.stackDoubles[sp] = this.doubles[slot];
+            }
+            case LONG -> {
+                this.stackKinds[sp] = LONG;
+                this.stackLongs[sp] = this.longs[slot];
+            }
+            default -> {
+                this.stackKinds[sp] = LONG;
+                this.stackLongs[sp] = 0;
+            }
+        }
+    }
+
+    String renderStack(int sp) {
+        return switch (this.stackKinds[sp]) {
+            case LONG -> Long.toString(this.stackLongs[sp]);
+            case DOUBLE -> Double.toString(this.stackDoubles[sp]);
+            default -> this.stackStrings[sp];
+        };
+    }
+
+    /**
+     * Assigns an evaluated result from the operand stack to a slot.
+     */
+    public void store(int slot, int sp) {
+        switch (this.stackKinds[sp]) {
+            case LONG -> this.setLong(slot, this.stackLongs[sp]);
+            case DOUBLE -> this.setDouble(slot, this.stackDoubles[sp]);
+            default -> this.setString(slot, this.stackStrings[sp]);
+        }
+    }
+
+    /**
+     * @return an evaluated result from the operand stack as an operator, for return values
+     */
+    public Operator operand(int sp) {
+        return switch (this.stackKinds[sp]) {
+            case LONG -> new Operator.NumberOperator(this.stackLongs[sp]);
+            case DOUBLE -> new Operator.NumberOperator(this.stackDoubles[sp]);
+            default -> new Operator.StringOperator(this.stackStrings[sp]);
+        };
+    }
+
+    /**
+     * @return the value of a slot as it appears in a command, or null if it hasn't been assigned
+     */
+    public String render(int slot) {
+        return switch (this.kinds[slot]) {
+            case LONG -> Long.toString(this.longs[slot]);
+            case DOUBLE -> Double.toString(this.doubles[slot]);
+            case FLOAT -> Float.toString((float) this.doubles[slot]);
+            case STRING -> (String) this.objects[slot];
+            default -> null;
+        };
+    }
+
+}
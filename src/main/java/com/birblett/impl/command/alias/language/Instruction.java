@@ -1,35 +1,101 @@
 package com.birblett.impl.command.alias.language;
 
 import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.impl.command.alias.AliasScoreboard;
 import com.birblett.impl.command.alias.AliasedCommand;
+import com.birblett.impl.command.alias.CallStack;
+import com.birblett.impl.command.alias.CommandParseCache;
+import com.birblett.util.TextUtils;
 import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.entity.Entity;
 import net.minecraft.server.command.ServerCommandSource;
 
 import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Basic interface for all instructions - returns -1 by default on execution, basically a no-op.
  */
 public interface Instruction {
 
-    default int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+    default int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
         return -1;
     }
 
+    /**
+     * Same as {@link #execute}, but direct calls to interpreted aliases may be pushed onto the current call stack instead
+     * of run to completion, returning -4. Only the interpreter's main loop handles that.
+     */
+    default int step(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+        return this.execute(aliasedCommand, context, frame);
+    }
 
     /**
-     * Holds a single command; does text replacement for variables on execution.
-     * @param command
+     * Resolves variable names to frame slots once compilation has finished; new names are added to the layout.
+     * @param slots slot layout of the alias being compiled
      */
-    record Command(String command) implements Instruction {
+    default void link(Map<String, Integer> slots) {}
 
-        @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            String cmd = this.command;
-            for (String var : variables.keySet()) {
-                cmd = cmd.replaceAll("\\{\\$" + var + "}", variables.get(var).value().toString());
+    /**
+     * Checks whether an instruction can be part of a pure alias, whose result depends on nothing but its arguments so it
+     * can be memoized. Only expressions, control flow, [return] and [call]s back to the same alias are allowed.
+     * @param self name of the alias being compiled
+     * @return why the instruction isn't pure, or null if it is
+     */
+    static String impurity(Instruction instruction, String self) {
+        List<Queue<Object>> expressions = switch (instruction) {
+            case ForEach ignored -> null;
+            case For loop -> List.of(loop.from, loop.to, loop.step);
+            case If cond -> List.of(cond.left, cond.right);
+            case Jump ignored -> List.of();
+            case Let let -> List.of(let.post);
+            case Return ret -> List.of(ret.post);
+            case Switch sw -> List.of(sw.post);
+            case Invoke call when call.callee.equals(self) -> call.args;
+            default -> null;
+        };
+        if (expressions == null) {
+            return instruction instanceof Invoke ? "pure aliases can only [call] themselves" : "pure aliases can only contain " +
+                    "expressions, control flow, [return] and [call]";
+        }
+        for (Queue<Object> post : expressions) {
+            for (Object o : post) {
+                if (o instanceof Intrinsic.Call call && !call.intrinsic().pure) {
+                    return call.intrinsic().name + "() can't be used in pure aliases";
+                }
             }
-            return aliasedCommand.executeCommand(context, cmd) ? -1 : -2;
+        }
+        return null;
+    }
+
+    /**
+     * Holds a single command; substitutes variables on execution through a precompiled {@link CommandTemplate}.
+     */
+    class Command implements Instruction {
+
+        private final String command;
+        CommandTemplate template = null;
+        CommandParseCache cache = null;
+
+        public Command(String command) {
+            this.command = command;
+        }
+
+        public String command() {
+            return this.command;
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.template = new CommandTemplate(this.command, slots);
+            this.cache = CommandParseCache.of(this.template);
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return aliasedCommand.executeCommand(context, this.template.render(frame), this.cache) ? -1 : -2;
         }
 
         @Override
@@ -39,6 +105,147 @@ public interface Instruction {
 
     }
 
+    /**
+     * A command line that runs another alias. Its arguments are parsed against the callee's registered arguments and it's
+     * executed directly, skipping the dispatcher; if the callee is gone or the line doesn't match its arguments, it runs
+     * as a normal command instead so errors stay the same.
+     */
+    class Call extends Command {
+
+        public final String callee;
+
+        public Call(String command, String callee) {
+            super(command);
+            this.callee = callee;
+        }
+
+        /**
+         * @return the literal name a command line starts with, or null if it's built from variables
+         */
+        public static String callee(String command) {
+            int end = command.indexOf(' ');
+            String name = end < 0 ? command : command.substring(0, end);
+            return name.isEmpty() || name.contains("{$") ? null : name;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return aliasedCommand.executeCall(context, this.template.render(frame), this.callee, this.cache) ? -1 : -2;
+        }
+
+        @Override
+        public int step(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return aliasedCommand.stepCall(context, this.template.render(frame), this.callee, this.cache);
+        }
+
+        @Override
+        public String toString() {
+            return "call " + this.command();
+        }
+
+    }
+
+    /**
+     * A direct call from an alias to itself with nothing left to run after it. Rather than starting another execution,
+     * the new arguments are loaded into the running frame and execution starts over, so tail recursion runs in constant
+     * space and doesn't count toward the recursion depth. Runs as a normal call if the arguments can't be loaded that way,
+     * i.e. if the alias has changed since this version was compiled.
+     */
+    class TailCall extends Call {
+
+        public TailCall(String command, String callee) {
+            super(command, callee);
+        }
+
+        /**
+         * Marks calls from an alias to itself that are in tail position, after {@link Call}s are bound. Tail [call]s only
+         * convert what's returned once the last execution returns, so they all have to convert to the same type, and
+         * self calls through command lines aren't marked alongside them since those return nothing.
+         * @param instructions instructions to mark in place
+         * @param self name of the alias
+         * @return whether anything changed
+         */
+        public static boolean bind(List<Instruction> instructions, String self) {
+            List<Integer> invokes = new ArrayList<>();
+            int type = -1;
+            boolean mixed = false;
+            for (int i = 0; i < instructions.size(); i++) {
+                if (instructions.get(i) instanceof Invoke call && self.equals(call.callee) && tail(instructions, i, call)) {
+                    mixed |= !invokes.isEmpty() && call.type != type;
+                    type = call.type;
+                    invokes.add(i);
+                }
+            }
+            boolean changed = false;
+            for (int i = 0; i < instructions.size(); i++) {
+                Instruction instruction = instructions.get(i);
+                if (instruction instanceof Invoke call && !(call instanceof TailInvoke) && !mixed && invokes.contains(i)) {
+                    instructions.set(i, new TailInvoke(call));
+                    changed = true;
+                }
+                else if (instruction instanceof Call call && !(call instanceof TailCall) && invokes.isEmpty() &&
+                        self.equals(call.callee) && tail(instructions, i, null)) {
+                    instructions.set(i, new TailCall(call.command(), call.callee));
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * @param call [call] whose variable may be returned right after, or null if nothing may run after
+         * @return whether only unconditional jumps, and a [return] of the call's variable if given, can follow an
+         * instruction
+         */
+        private static boolean tail(List<Instruction> instructions, int index, Invoke call) {
+            int next = index + 1;
+            for (int steps = 0; next < instructions.size() && steps < instructions.size(); steps++) {
+                Instruction instruction = instructions.get(next);
+                if (instruction instanceof Jump jump && !(instruction instanceof If)) {
+                    next = jump.jumpTo >= 0 ? jump.jumpTo : next + 1;
+                }
+                else {
+                    return call != null && instruction instanceof Return ret && ret.returns(call.assignVar, call.slot);
+                }
+            }
+            return next >= instructions.size();
+        }
+
+        /**
+         * Loads the arguments of a rendered self call into the frame.
+         * @return whether execution should start over; otherwise the call has to run normally
+         */
+        public static boolean enter(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame,
+                                    String command, String callee) {
+            if (!aliasedCommand.tailCall(context, frame, command, callee)) {
+                return false;
+            }
+            // whatever ran this execution gets nothing back, and later returns go to the source like a command's would
+            frame.result = null;
+            return true;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            String command = this.template.render(frame);
+            if (enter(aliasedCommand, context, frame, command, this.callee)) {
+                return 0;
+            }
+            return aliasedCommand.executeCall(context, command, this.callee, this.cache) ? -1 : -2;
+        }
+
+        @Override
+        public int step(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return this.execute(aliasedCommand, context, frame);
+        }
+
+        @Override
+        public String toString() {
+            return "tail call " + this.command();
+        }
+
+    }
+
     /**
      * Is capable of assigning to variables and evaluating the value of expressions. Handles
      * order of operations and parentheses by converting to postfix and doing some preprocessing
@@ -48,9 +255,11 @@ public interface Instruction {
 
         public boolean valid = true;
         protected int type = 0;
-        private final String assignVar;
+        final String assignVar;
+        int slot = -1;
         public String err = null;
         protected final Queue<Object> post = new LinkedList<>();
+        Expression expression = null;
 
         public Let(String assignVar, String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
             String[] assn = assignVar.split(" ");
@@ -99,22 +308,34 @@ public interface Instruction {
             }
         }
 
+        /**
+         * Restores an already linked assignment, see {@link InstructionCodec}.
+         */
+        Let(String assignVar, int type, Queue<Object> post) {
+            this.assignVar = assignVar;
+            this.type = type;
+            this.post.addAll(post);
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            Operator o = this.evaluate(this.post, variables);
-            if (!variables.containsKey(this.assignVar)) {
-                variables.put(this.assignVar, new Variable(new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP
-                        .getOrDefault(this.type, "string"), new String[0]), null));
-            }
-            if (o instanceof Operator.NumberOperator n) {
-                variables.put(this.assignVar, new Variable(variables.get(this.assignVar).type(), n.getValue()));
-            }
-            else if (o instanceof Operator.StringOperator s) {
-                variables.put(this.assignVar, new Variable(variables.get(this.assignVar).type(), s.str()));
-            }
+        public void link(Map<String, Integer> slots) {
+            this.resolve(this.post, slots);
+            this.expression = new Expression(this.post);
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            this.expression.evaluate(frame, 0);
+            frame.store(this.slot, 0);
             return -1;
         }
 
+        @Override
+        public String toString() {
+            return "let " + this.assignVar + " = " + this.post;
+        }
+
         @Override
         public void error(String s) {
             this.err = s;
@@ -134,7 +355,7 @@ public interface Instruction {
         }
 
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
             return this.jumpTo;
         }
 
@@ -153,8 +374,11 @@ public interface Instruction {
 
         protected String name = "if";
         protected String cmp;
-        private final Queue<Object> left = new LinkedList<>();
-        private final Queue<Object> right = new LinkedList<>();
+        final Queue<Object> left = new LinkedList<>();
+        final Queue<Object> right = new LinkedList<>();
+        Expression leftExpression = null;
+        Expression rightExpression = null;
+        int comparator = Expression.EQ;
         public String err = null;
         public boolean valid = true;
 
@@ -190,11 +414,30 @@ public interface Instruction {
             }
         }
 
+        /**
+         * Restores an already linked condition, see {@link InstructionCodec}.
+         */
+        If(int jumpTo, String cmp, Queue<Object> left, Queue<Object> right) {
+            super(jumpTo);
+            this.cmp = cmp;
+            this.left.addAll(left);
+            this.right.addAll(right);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.resolve(this.left, slots);
+            this.resolve(this.right, slots);
+            this.leftExpression = new Expression(this.left);
+            this.rightExpression = new Expression(this.right);
+            this.comparator = Expression.comparator(this.cmp);
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            Operator l = this.evaluate(this.left, variables);
-            Operator r = this.evaluate(this.right, variables);
-            return l.compare(this.cmp, r) ? -1 : this.jumpTo;
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            this.leftExpression.evaluate(frame, 0);
+            this.rightExpression.evaluate(frame, 1);
+            return Expression.compare(frame, this.comparator, 0, 1) ? -1 : this.jumpTo;
         }
 
         @Override
@@ -236,6 +479,506 @@ public interface Instruction {
             this.name = "while";
         }
 
+        While(int startAddress, int jumpTo, String cmp, Queue<Object> left, Queue<Object> right) {
+            super(jumpTo, cmp, left, right);
+            this.startAddress = startAddress;
+            this.name = "while";
+        }
+
+    }
+
+    /**
+     * Loops over the entities held by an entity or entities argument, assigning each one to the loop variable in turn.
+     * The loop variable reads as the entity's uuid, so commands inside the loop target it directly rather than running a
+     * selector again. The position in the list is kept in a hidden variable, reset by an assignment placed right before
+     * the loop; otherwise this closes with [end] like a [while].
+     */
+    class ForEach extends While {
+
+        private static final Pattern SYNTAX = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*) +in +([a-zA-Z_][a-zA-Z0-9_]*)");
+
+        final String assignVar;
+        final String source;
+        // not a valid variable name, so it can't clash with one
+        final String counter;
+        int slot = -1;
+        int sourceSlot = -1;
+        int counterSlot = -1;
+
+        public ForEach(int startAddress, String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            super(startAddress, -1, "=", new LinkedList<>(), new LinkedList<>());
+            this.name = "foreach";
+            this.counter = "foreach$" + startAddress;
+            Matcher m = SYNTAX.matcher(expression);
+            if (!m.matches()) {
+                this.assignVar = this.source = "";
+                this.err = "must be of format [foreach var in entities]";
+                this.valid = false;
+                return;
+            }
+            this.assignVar = m.group(1);
+            this.source = m.group(2);
+            Variable.Definition def = null;
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.source)) {
+                    def = varMap.get(this.source);
+                    break;
+                }
+            }
+            if (def == null || !"entity".equals(def.typeName) && !"entities".equals(def.typeName)) {
+                this.err = "can only loop over entity or entities arguments, got " + this.source;
+                this.valid = false;
+                return;
+            }
+            Variable.Definition assigned = new Variable.Definition(this.assignVar, "entity", new String[0]);
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.assignVar)) {
+                    varMap.put(this.assignVar, assigned);
+                    return;
+                }
+            }
+            vars.getLast().put(this.assignVar, assigned);
+        }
+
+        /**
+         * Restores an already linked loop, see {@link InstructionCodec}.
+         */
+        ForEach(int startAddress, int jumpTo, String assignVar, String source, String counter) {
+            super(startAddress, jumpTo, "=", new LinkedList<>(), new LinkedList<>());
+            this.name = "foreach";
+            this.assignVar = assignVar;
+            this.source = source;
+            this.counter = counter;
+        }
+
+        /**
+         * @return the assignment starting the loop from the first entity, to be placed directly before it
+         */
+        public Let reset() {
+            return new Let(this.counter, 1, new LinkedList<>(List.of(new Operator.NumberOperator(0L))));
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            super.link(slots);
+            this.sourceSlot = slots.computeIfAbsent(this.source, k -> slots.size());
+            this.counterSlot = slots.computeIfAbsent(this.counter, k -> slots.size());
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            long index = frame.getLong(this.counterSlot);
+            Entity entity = element(frame.resolved(this.sourceSlot), index);
+            if (entity == null) {
+                return this.jumpTo;
+            }
+            frame.setLong(this.counterSlot, index + 1);
+            frame.setResolved(this.slot, entity.getUuidAsString(), entity);
+            return -1;
+        }
+
+        /**
+         * @param value resolved value of an entity or entities argument
+         * @return the entity at the given position, or null past the end or if the value isn't an entity at all
+         */
+        public static Entity element(Object value, long index) {
+            if (value instanceof List<?> list) {
+                return index < list.size() ? (Entity) list.get((int) index) : null;
+            }
+            return value instanceof Entity entity && index == 0 ? entity : null;
+        }
+
+        @Override
+        public String toString() {
+            return "foreach " + this.assignVar + " in " + this.source + " else jmp " + this.jumpTo;
+        }
+
+    }
+
+    /**
+     * Counts from one bound to another, inclusive, by a fixed step. The bounds and step are evaluated once on entry and
+     * kept in hidden variables alongside a primitive counter, which the loop variable is set from on every iteration, so
+     * assigning to it inside the loop doesn't change how many times it runs. Closed by a {@link ForNext} placed at its
+     * [end], which steps the counter and jumps back; a step of 0 runs nothing.
+     */
+    class For extends While {
+
+        private static final Pattern SYNTAX = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*) +in +(.+?)\\.\\.(.+?)(?: +step +(.+))?");
+
+        final String assignVar;
+        // not a valid variable name, so it can't clash with one; the bound and step are kept under derived names
+        final String counter;
+        final Queue<Object> from = new LinkedList<>();
+        final Queue<Object> to = new LinkedList<>();
+        final Queue<Object> step = new LinkedList<>();
+        Expression fromExpression = null;
+        Expression toExpression = null;
+        Expression stepExpression = null;
+        int slot = -1;
+        int counterSlot = -1;
+        int endSlot = -1;
+        int stepSlot = -1;
+
+        public For(int startAddress, String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            super(startAddress, -1, "=", new LinkedList<>(), new LinkedList<>());
+            this.name = "for";
+            this.counter = "for$" + startAddress;
+            Matcher m = SYNTAX.matcher(expression);
+            if (!m.matches()) {
+                this.assignVar = "";
+                this.err = "must be of format [for var in start..end] or [for var in start..end step step]";
+                this.valid = false;
+                return;
+            }
+            this.assignVar = m.group(1);
+            String[] parts = {m.group(2), m.group(3), m.group(4) != null ? m.group(4) : "1"};
+            List<Queue<Object>> posts = List.of(this.from, this.to, this.step);
+            for (int i = 0; i < parts.length; i++) {
+                Integer type = this.parseExpression(parts[i].strip(), null, vars, posts.get(i));
+                if (type == null) {
+                    this.valid = false;
+                    return;
+                }
+                if (type == 4) {
+                    this.err = "loop bounds and step must be numbers";
+                    this.valid = false;
+                    return;
+                }
+            }
+            Variable.Definition assigned = new Variable.Definition(this.assignVar, "long", new String[0]);
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.assignVar)) {
+                    Variable.Definition outer = varMap.get(this.assignVar);
+                    if (AliasConstants.TYPE_MAP.getOrDefault(outer.type.clazz(), 4) > 1) {
+                        this.err = "loop variable " + this.assignVar + " is already a " + outer.typeName;
+                        this.valid = false;
+                        return;
+                    }
+                    varMap.put(this.assignVar, assigned);
+                    return;
+                }
+            }
+            vars.getLast().put(this.assignVar, assigned);
+        }
+
+        /**
+         * Restores an already linked loop, see {@link InstructionCodec}.
+         */
+        For(int startAddress, int jumpTo, String assignVar, String counter, Queue<Object> from, Queue<Object> to, Queue<Object> step) {
+            super(startAddress, jumpTo, "=", new LinkedList<>(), new LinkedList<>());
+            this.name = "for";
+            this.assignVar = assignVar;
+            this.counter = counter;
+            this.from.addAll(from);
+            this.to.addAll(to);
+            this.step.addAll(step);
+        }
+
+        /**
+         * @return the instruction closing the loop, to be placed at its [end]
+         */
+        public ForNext next() {
+            return new ForNext(this.startAddress + 1, this.assignVar, this.counter);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            super.link(slots);
+            this.resolve(this.from, slots);
+            this.resolve(this.to, slots);
+            this.resolve(this.step, slots);
+            this.fromExpression = new Expression(this.from);
+            this.toExpression = new Expression(this.to);
+            this.stepExpression = new Expression(this.step);
+            this.counterSlot = slots.computeIfAbsent(this.counter, k -> slots.size());
+            this.endSlot = slots.computeIfAbsent(this.counter + "$end", k -> slots.size());
+            this.stepSlot = slots.computeIfAbsent(this.counter + "$step", k -> slots.size());
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            this.fromExpression.evaluate(frame, 0);
+            this.toExpression.evaluate(frame, 1);
+            this.stepExpression.evaluate(frame, 2);
+            long from = operand(frame, 0), end = operand(frame, 1), step = operand(frame, 2);
+            if (!inRange(from, end, step)) {
+                return this.jumpTo;
+            }
+            frame.setLong(this.counterSlot, from);
+            frame.setLong(this.endSlot, end);
+            frame.setLong(this.stepSlot, step);
+            frame.setLong(this.slot, from);
+            return -1;
+        }
+
+        /**
+         * @return an evaluated bound or step, truncated to a whole number
+         */
+        private static long operand(Frame frame, int sp) {
+            return switch (frame.stackKinds[sp]) {
+                case Frame.LONG -> frame.stackLongs[sp];
+                case Frame.DOUBLE -> (long) frame.stackDoubles[sp];
+                default -> 0;
+            };
+        }
+
+        /**
+         * @return whether the loop runs for the given counter value
+         */
+        public static boolean inRange(long counter, long end, long step) {
+            return step > 0 ? counter <= end : step < 0 && counter >= end;
+        }
+
+        /**
+         * @param counter counter value that's in range
+         * @return whether the loop runs again after stepping the counter
+         */
+        public static boolean hasNext(long counter, long end, long step) {
+            // compared as unsigned distances, since counter + step can overflow
+            return step > 0 ? Long.compareUnsigned(end - counter, step) >= 0 : step < 0 && Long.compareUnsigned(counter - end,
+                    -step) >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "for " + this.assignVar + " in " + this.from + ".." + this.to + " step " + this.step + " else jmp " + this.jumpTo;
+        }
+
+    }
+
+    /**
+     * Closes a {@link For}: steps its counter and jumps back to the start of the loop body while it's still in range,
+     * otherwise falls through.
+     */
+    class ForNext extends If {
+
+        final String assignVar;
+        final String counter;
+        int slot = -1;
+        int counterSlot = -1;
+        int endSlot = -1;
+        int stepSlot = -1;
+
+        public ForNext(int jumpTo, String assignVar, String counter) {
+            super(jumpTo, "=", new LinkedList<>(), new LinkedList<>());
+            this.assignVar = assignVar;
+            this.counter = counter;
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            super.link(slots);
+            this.counterSlot = slots.computeIfAbsent(this.counter, k -> slots.size());
+            this.endSlot = slots.computeIfAbsent(this.counter + "$end", k -> slots.size());
+            this.stepSlot = slots.computeIfAbsent(this.counter + "$step", k -> slots.size());
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            long step = frame.getLong(this.stepSlot), counter = frame.getLong(this.counterSlot);
+            if (!For.hasNext(counter, frame.getLong(this.endSlot), step)) {
+                return -1;
+            }
+            counter += step;
+            frame.setLong(this.counterSlot, counter);
+            frame.setLong(this.slot, counter);
+            return this.jumpTo;
+        }
+
+        @Override
+        public String toString() {
+            return "next " + this.assignVar + " then jmp " + this.jumpTo;
+        }
+
+    }
+
+    /**
+     * Jumps to the [case] matching the value of an expression, or to [default] if none match. Values are matched as they
+     * would appear in a command, through a hash table from case values to addresses. When switching directly on a selection
+     * argument, each option's target is also resolved ahead of time and looked up by the option index bound with the
+     * argument. Each [case] after the first starts with a jump to the end of the switch, so cases never fall through.
+     */
+    class Switch implements Instruction, ExpressionParser {
+
+        private static final Pattern CASE = Pattern.compile("(?<!\\\\)\"(.*?)(?<!\\\\)\"|[^,\\s]+");
+
+        public boolean valid = true;
+        public String err = null;
+        final Queue<Object> post = new LinkedList<>();
+        // case value to target address, in declaration order
+        final LinkedHashMap<String, Integer> cases = new LinkedHashMap<>();
+        int defaultTarget = -1;
+        // options of the selection argument being switched on, if any
+        String[] options = null;
+        private final List<Jump> breaks = new ArrayList<>();
+        private boolean hasDefault = false;
+        Expression expression = null;
+        int slot = -1;
+        int[] ordinalTargets = null;
+
+        public Switch(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            if (expr.isEmpty()) {
+                this.error("switch must be of form [switch (expression)]");
+                return;
+            }
+            if (this.parseExpression(expr, null, vars, this.post) == null) {
+                this.valid = false;
+                return;
+            }
+            if (this.post.size() == 1 && this.post.peek() instanceof String var) {
+                for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                    if (varMap.containsKey(var)) {
+                        if ("selection".equals(varMap.get(var).typeName)) {
+                            this.options = varMap.get(var).args;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Restores an already linked switch, see {@link InstructionCodec}.
+         */
+        Switch(Queue<Object> post, Map<String, Integer> cases, int defaultTarget, String[] options) {
+            this.post.addAll(post);
+            this.cases.putAll(cases);
+            this.defaultTarget = defaultTarget;
+            this.options = options;
+        }
+
+        /**
+         * Adds the values of a [case] line, all jumping to the given address.
+         * @param values comma separated list of values, either quoted strings, numbers or bare words
+         * @param previous jump ending the previous case, or null if this is the first
+         * @return false if a value is repeated or there's nothing to match, after setting the error
+         */
+        public boolean addCase(String values, Jump previous, int address) {
+            if (this.hasDefault) {
+                this.error("[case] can't follow [default]");
+                return false;
+            }
+            Matcher m = CASE.matcher(values);
+            boolean any = false;
+            while (m.find()) {
+                String value = m.group(1);
+                if (value == null) {
+                    Operator.NumberOperator num = Operator.NumberOperator.fromString(m.group());
+                    value = num != null ? num.getValue().toString() : m.group();
+                }
+                if (this.cases.putIfAbsent(value, address) != null) {
+                    this.error("duplicate case \"" + value + "\"");
+                    return false;
+                }
+                any = true;
+            }
+            if (!any) {
+                this.error("case must be of form [case value1, value2, ...]");
+                return false;
+            }
+            if (previous != null) {
+                this.breaks.add(previous);
+            }
+            return true;
+        }
+
+        /**
+         * Sets the [default] target.
+         * @param previous jump ending the previous case, or null if this is the first
+         * @return false if there already is a default
+         */
+        public boolean addDefault(Jump previous, int address) {
+            if (this.hasDefault) {
+                this.error("switch can only have one [default]");
+                return false;
+            }
+            this.hasDefault = true;
+            this.defaultTarget = address;
+            if (previous != null) {
+                this.breaks.add(previous);
+            }
+            return true;
+        }
+
+        public boolean hasCases() {
+            return !this.cases.isEmpty() || this.hasDefault;
+        }
+
+        /**
+         * Points the end of every case, and the default if there isn't one, at the address after the switch.
+         */
+        public void close(int address) {
+            for (Jump jump : this.breaks) {
+                jump.jumpTo = address;
+            }
+            if (!this.hasDefault) {
+                this.defaultTarget = address;
+            }
+        }
+
+        /**
+         * @return every address this can jump to, including the default
+         */
+        public Collection<Integer> targets() {
+            List<Integer> out = new ArrayList<>(this.cases.values());
+            out.add(this.defaultTarget);
+            return out;
+        }
+
+        /**
+         * Remaps every target address, i.e. after instructions are removed.
+         */
+        public void retarget(IntUnaryOperator remap) {
+            this.cases.replaceAll((value, target) -> remap.applyAsInt(target));
+            this.defaultTarget = remap.applyAsInt(this.defaultTarget);
+        }
+
+        /**
+         * @return target address for a value
+         */
+        public int target(String value) {
+            return this.cases.getOrDefault(value, this.defaultTarget);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.resolve(this.post, slots);
+            this.expression = new Expression(this.post);
+            if (this.options != null && this.post.size() == 1 && this.post.peek() instanceof Integer s) {
+                this.slot = s;
+                this.ordinalTargets = new int[this.options.length];
+                for (int i = 0; i < this.options.length; i++) {
+                    this.ordinalTargets[i] = this.target(this.options[i]);
+                }
+            }
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            if (this.ordinalTargets != null) {
+                int ordinal = frame.ordinal(this.slot);
+                if (ordinal >= 0 && ordinal < this.ordinalTargets.length) {
+                    return this.ordinalTargets[ordinal];
+                }
+            }
+            this.expression.evaluate(frame, 0);
+            return this.target(frame.renderStack(0));
+        }
+
+        @Override
+        public String toString() {
+            return "switch " + this.post + " " + this.cases + " else jmp " + this.defaultTarget;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
     }
 
     /**
@@ -246,7 +989,8 @@ public interface Instruction {
         public boolean valid = true;
         public String err = null;
         int inferredType = -1;
-        private final Queue<Object> post = new LinkedList<>();
+        final Queue<Object> post = new LinkedList<>();
+        Expression expression = null;
 
         public Return(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
             if (!expr.isEmpty()) {
@@ -254,23 +998,247 @@ public interface Instruction {
             }
         }
 
+        Return(int inferredType, Queue<Object> post) {
+            this.inferredType = inferredType;
+            this.post.addAll(post);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            if (this.inferredType >= 0) {
+                this.resolve(this.post, slots);
+                this.expression = new Expression(this.post);
+            }
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
             if (this.inferredType >= 0) {
-                Operator o = this.evaluate(this.post, variables);
-                ((CommandSourceModifier) context.getSource()).technicalToolbox$setReturnValue(o);
+                this.expression.evaluate(frame, 0);
+                set(context, frame, frame.operand(0));
             }
             else {
-                ((CommandSourceModifier) context.getSource()).technicalToolbox$setReturnValue(null);
+                set(context, frame, null);
             }
             return -2;
         }
 
+        /**
+         * Hands a return value back to the [call] that ran this alias, or leaves it on the source for [fetch] otherwise.
+         * @param value returned value, or null if nothing was returned
+         */
+        public static void set(CommandContext<ServerCommandSource> context, Frame frame, Operator value) {
+            set(context.getSource(), frame, value);
+        }
+
+        /**
+         * Values returned after a tail [call] are converted the same way that [call] would have.
+         */
+        public static void set(ServerCommandSource source, Frame frame, Operator value) {
+            if (frame.returnType >= 0) {
+                Object converted = (value != null ? value : new Operator.NumberOperator(0)).toType(frame.returnType);
+                value = converted instanceof Number n ? new Operator.NumberOperator(n) : new Operator.StringOperator((String) converted);
+                frame.returnType = -1;
+            }
+            // a chain that exceeded the recursion depth can return early with incomplete results
+            if (frame.key != null && value != null && (CallStack.current() == null || !CallStack.current().exceeded())) {
+                frame.owner.memo.put(frame.key, value);
+                frame.key = null;
+            }
+            if (frame.result != null) {
+                frame.result[0] = value;
+            }
+            else {
+                ((CommandSourceModifier) source).technicalToolbox$setReturnValue(value);
+            }
+        }
+
+        /**
+         * @return whether this returns just the given variable, by name before linking or by slot after
+         */
+        boolean returns(String var, int slot) {
+            if (this.inferredType < 0 || this.post.size() != 1) {
+                return false;
+            }
+            Object o = this.post.peek();
+            return var.equals(o) || o instanceof Integer i && i == slot;
+        }
+
+        @Override
+        public String toString() {
+            return this.inferredType >= 0 ? "return " + this.post : "return";
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+    }
+
+    /**
+     * Suspends the alias for a number of ticks, after which it resumes from the next instruction with the same variables.
+     * Suspension itself is handled by the interpreter, which evaluates {@link Wait#ticks} when this returns -3.
+     */
+    class Wait implements Instruction, ExpressionParser {
+
+        public boolean valid = true;
+        public String err = null;
+        final Queue<Object> post = new LinkedList<>();
+        Expression expression = null;
+
+        public Wait(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            if (expr.isEmpty()) {
+                this.error("wait must be of form [wait ticks]");
+            }
+            else if (this.parseExpression(expr, 1, vars, this.post) == null) {
+                this.valid = false;
+            }
+        }
+
+        Wait(Queue<Object> post) {
+            this.post.addAll(post);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.resolve(this.post, slots);
+            this.expression = new Expression(this.post);
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return -3;
+        }
+
+        /**
+         * @return number of ticks to wait for, at least 1
+         */
+        public long ticks(Frame frame) {
+            long ticks = switch (this.expression.evaluate(frame, 0)) {
+                case Frame.LONG -> frame.stackLongs[0];
+                case Frame.DOUBLE -> (long) frame.stackDoubles[0];
+                default -> 1;
+            };
+            return Math.max(ticks, 1);
+        }
+
+        @Override
+        public String toString() {
+            return "wait " + this.post;
+        }
+
         @Override
         public void error(String s) {
             this.valid = false;
             this.err = s;
         }
+
+    }
+
+    /**
+     * Sets a scoreboard score directly through {@link AliasScoreboard}, i.e. [setscore "@s", "kills" = kills + 1]. Holder
+     * and objective are expressions, rendered as they would be in a command. Fails like a command if the objective doesn't
+     * exist.
+     */
+    class SetScore implements Instruction, ExpressionParser {
+
+        public boolean valid = true;
+        public String err = null;
+        final Queue<Object> holder = new LinkedList<>();
+        final Queue<Object> objective = new LinkedList<>();
+        final Queue<Object> value = new LinkedList<>();
+        Expression holderExpression = null;
+        Expression objectiveExpression = null;
+        Expression valueExpression = null;
+
+        public SetScore(String target, String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            // split on the first comma outside of quotes and parentheses
+            int split = -1, depth = 0;
+            boolean quoted = false;
+            for (int i = 0; i < target.length() && split < 0; i++) {
+                char c = target.charAt(i);
+                if (c == '"' && (i == 0 || target.charAt(i - 1) != '\\')) {
+                    quoted = !quoted;
+                }
+                else if (!quoted) {
+                    depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+                    if (c == ',' && depth == 0) {
+                        split = i;
+                    }
+                }
+            }
+            if (split < 0) {
+                this.error("setscore must be of form [setscore holder, objective = value]");
+                return;
+            }
+            if (this.parseExpression(target.substring(0, split), null, vars, this.holder) == null ||
+                    this.parseExpression(target.substring(split + 1), null, vars, this.objective) == null) {
+                this.valid = false;
+                return;
+            }
+            Integer type = this.parseExpression(expr, null, vars, this.value);
+            if (type == null) {
+                this.valid = false;
+            }
+            else if (type == 4) {
+                this.error("score value must be a number");
+            }
+        }
+
+        SetScore(Queue<Object> holder, Queue<Object> objective, Queue<Object> value) {
+            this.holder.addAll(holder);
+            this.objective.addAll(objective);
+            this.value.addAll(value);
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.resolve(this.holder, slots);
+            this.resolve(this.objective, slots);
+            this.resolve(this.value, slots);
+            this.holderExpression = new Expression(this.holder);
+            this.objectiveExpression = new Expression(this.objective);
+            this.valueExpression = new Expression(this.value);
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            this.holderExpression.evaluate(frame, 0);
+            this.objectiveExpression.evaluate(frame, 1);
+            long value = switch (this.valueExpression.evaluate(frame, 2)) {
+                case Frame.LONG -> frame.stackLongs[2];
+                case Frame.DOUBLE -> (long) frame.stackDoubles[2];
+                default -> 0;
+            };
+            return set(context, frame.renderStack(0), frame.renderStack(1), value) ? -1 : -2;
+        }
+
+        /**
+         * Sets the score, clamped to the range of an int, sending an error to the source on failure.
+         * @return false if the score couldn't be set
+         */
+        public static boolean set(CommandContext<ServerCommandSource> context, String holder, String objective, long value) {
+            String error = AliasScoreboard.set(context.getSource(), holder, objective, Math.clamp(value, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE));
+            if (error != null) {
+                context.getSource().sendError(TextUtils.formattable(error));
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "setscore " + this.holder + ", " + this.objective + " = " + this.value;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
     }
 
     /**
@@ -282,8 +1250,9 @@ public interface Instruction {
 
         public boolean valid = true;
         public String err = null;
-        private int type = 0;
-        private String assignVar = null;
+        int type = 0;
+        String assignVar = null;
+        int slot = -1;
 
         public Fetch(String type, String var, List<LinkedHashMap<String, Variable.Definition>> vars) {
             if (!AliasConstants.TYPE_VALUE_MAP.containsKey(type)) {
@@ -311,17 +1280,31 @@ public interface Instruction {
             }
         }
 
+        Fetch(int type, String assignVar) {
+            this.type = type;
+            this.assignVar = assignVar;
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
             Operator o = ((CommandSourceModifier) context.getSource()).technicalToolbox$getReturnValue();
             if (o == null) {
                 o = new Operator.NumberOperator(0);
             }
-            Variable.Definition def = new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP.get(this.type), new String[0]);
-            variables.put(this.assignVar, new Variable(def, o.toType(this.type)));
+            frame.set(this.slot, o.toType(this.type));
             return -1;
         }
 
+        @Override
+        public String toString() {
+            return "fetch " + AliasConstants.INV_VALUE_MAP.get(this.type) + " " + this.assignVar;
+        }
+
         @Override
         public void error(String s) {
             this.valid = false;
@@ -330,4 +1313,220 @@ public interface Instruction {
 
     }
 
+
+    /**
+     * Runs another alias with arguments evaluated from expressions, and assigns the value it returns. The arguments go
+     * straight into the callee's frame and the result comes back from it directly, so nothing is rendered, parsed or
+     * left on the command source. Calls that can't be bound stop the alias like a failed command would.
+     */
+    class Invoke implements Instruction, ExpressionParser {
+
+        private static final Pattern SYNTAX = Pattern.compile("(?:(\\w+) +)?(\\w+) *= *([^\\s(]+) *\\((.*)\\)");
+
+        public boolean valid = true;
+        public String err = null;
+        int type = 0;
+        String assignVar = null;
+        final String callee;
+        final List<Queue<Object>> args = new ArrayList<>();
+        Expression[] expressions = null;
+        int slot = -1;
+
+        public Invoke(String call, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            Matcher m = SYNTAX.matcher(call);
+            if (!m.matches()) {
+                this.callee = null;
+                this.error("call must be of form [call (type) var = alias(arguments)]");
+                return;
+            }
+            this.assignVar = m.group(2);
+            this.callee = m.group(3);
+            Variable.Definition existing = null;
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.assignVar)) {
+                    existing = varMap.get(this.assignVar);
+                    break;
+                }
+            }
+            if (m.group(1) != null) {
+                if (!AliasConstants.TYPE_VALUE_MAP.containsKey(m.group(1))) {
+                    this.error("not a valid type: " + m.group(1));
+                    return;
+                }
+                this.type = AliasConstants.TYPE_VALUE_MAP.get(m.group(1));
+            }
+            else if (existing != null) {
+                this.type = AliasConstants.TYPE_MAP.getOrDefault(existing.type.clazz(), 4);
+            }
+            else {
+                this.error("return type of new variable " + this.assignVar + " must be given, i.e. [call long " +
+                        this.assignVar + " = ...]");
+                return;
+            }
+            for (String arg : split(m.group(4))) {
+                Queue<Object> post = new LinkedList<>();
+                if (this.parseExpression(arg, null, vars, post) == null) {
+                    this.valid = false;
+                    return;
+                }
+                this.args.add(post);
+            }
+            Variable.Definition definition = new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP.get(this.type),
+                    new String[0]);
+            boolean newAssignment = true;
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.assignVar)) {
+                    newAssignment = false;
+                    varMap.put(this.assignVar, definition);
+                    break;
+                }
+            }
+            if (newAssignment) {
+                vars.getLast().put(this.assignVar, definition);
+            }
+        }
+
+        /**
+         * Restores an already linked call, see {@link InstructionCodec}.
+         */
+        Invoke(int type, String assignVar, String callee, List<Queue<Object>> args) {
+            this.type = type;
+            this.assignVar = assignVar;
+            this.callee = callee;
+            this.args.addAll(args);
+        }
+
+        /**
+         * Splits an argument list on top level commas, ignoring ones in strings or nested parentheses.
+         */
+        private static List<String> split(String args) {
+            List<String> out = new ArrayList<>();
+            if (args.isBlank()) {
+                return out;
+            }
+            int depth = 0, start = 0;
+            boolean quoted = false;
+            for (int i = 0; i < args.length(); i++) {
+                char c = args.charAt(i);
+                if (c == '"' && (i == 0 || args.charAt(i - 1) != '\\')) {
+                    quoted = !quoted;
+                }
+                else if (!quoted && c == '(') {
+                    depth++;
+                }
+                else if (!quoted && c == ')') {
+                    depth--;
+                }
+                else if (!quoted && depth == 0 && c == ',') {
+                    out.add(args.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            out.add(args.substring(start));
+            return out;
+        }
+
+        @Override
+        public void link(Map<String, Integer> slots) {
+            this.expressions = new Expression[this.args.size()];
+            for (int i = 0; i < this.expressions.length; i++) {
+                this.resolve(this.args.get(i), slots);
+                this.expressions[i] = new Expression(this.args.get(i));
+            }
+            this.slot = slots.computeIfAbsent(this.assignVar, k -> slots.size());
+        }
+
+        Operator[] evaluate(Frame frame) {
+            Operator[] values = new Operator[this.expressions.length];
+            for (int i = 0; i < values.length; i++) {
+                this.expressions[i].evaluate(frame, 0);
+                values[i] = frame.operand(0);
+            }
+            return values;
+        }
+
+        /**
+         * Assigns the value returned by the callee.
+         * @param result returned value, or null if nothing was returned
+         */
+        public void assign(Frame frame, Operator result) {
+            frame.set(this.slot, (result != null ? result : new Operator.NumberOperator(0)).toType(this.type));
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return this.call(aliasedCommand, context, frame, this.evaluate(frame));
+        }
+
+        int call(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame, Operator[] values) {
+            Operator result = aliasedCommand.call(context, this.callee, values);
+            if (result == null) {
+                return -2;
+            }
+            this.assign(frame, result);
+            return -1;
+        }
+
+        @Override
+        public int step(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return aliasedCommand.stepInvoke(context, frame, this, this.callee, this.evaluate(frame));
+        }
+
+        @Override
+        public String toString() {
+            return "call " + AliasConstants.INV_VALUE_MAP.get(this.type) + " " + this.assignVar + " = " + this.callee + this.args;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
+    }
+
+    /**
+     * A [call] from an alias to itself whose result is returned right away. Like {@link TailCall}, the arguments are
+     * loaded into the running frame and execution starts over; the frame remembers the type to convert to, so whatever
+     * the last execution returns is converted once, the same as each [call] would have.
+     */
+    class TailInvoke extends Invoke {
+
+        TailInvoke(Invoke call) {
+            super(call.type, call.assignVar, call.callee, call.args);
+        }
+
+        /**
+         * Loads evaluated arguments of a self call into the frame.
+         * @return 0 if execution should start over, -2 if the arguments couldn't be bound after sending an error, or -1 if
+         * the call has to run normally
+         */
+        public static int enter(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame,
+                                String callee, Operator[] values, int type) {
+            int out = aliasedCommand.tailInvoke(context, frame, callee, values);
+            if (out == 0) {
+                frame.returnType = type;
+            }
+            return out;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            Operator[] values = this.evaluate(frame);
+            int out = enter(aliasedCommand, context, frame, this.callee, values, this.type);
+            return out != -1 ? out : this.call(aliasedCommand, context, frame, values);
+        }
+
+        @Override
+        public int step(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return this.execute(aliasedCommand, context, frame);
+        }
+
+        @Override
+        public String toString() {
+            return "tail " + super.toString();
+        }
+
+    }
+
 }
@@ -0,0 +1,271 @@
+package com.birblett.impl.command.alias.language;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Compact binary form of a linked instruction list, for caching compiled aliases on disk. Instructions are stored as they
+ * are after optimization and linking, so expressions hold frame slots rather than variable names; reading them back and
+ * linking them against the same slot layout gives the same program without reparsing anything. Bump {@link #FORMAT}
+ * whenever the encoding or the meaning of any instruction changes.
+ */
+public final class InstructionCodec {
+
+    public static final int FORMAT = 2;
+
+    private static final int COMMAND = 0, LET = 1, JUMP = 2, IF_JUMP = 3, IF = 4, WHILE = 5, RETURN = 6, WAIT = 7, FETCH = 8,
+            SWITCH = 9, SET_SCORE = 10, FOR_EACH = 11, INVOKE = 12, FOR = 13, FOR_NEXT = 14;
+    private static final int OP = 0, SLOT = 1, LONG = 2, DOUBLE = 3, STRING = 4, CALL = 5;
+
+    private InstructionCodec() {}
+
+    /**
+     * @return whether every instruction in the list can be encoded
+     */
+    public static boolean supports(List<Instruction> instructions) {
+        for (Instruction instruction : instructions) {
+            if (tag(instruction) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tag(Instruction instruction) {
+        return switch (instruction) {
+            // includes calls, which are bound again when read
+            case Instruction.Command ignored -> COMMAND;
+            case Instruction.Let ignored -> LET;
+            case Instruction.ForEach ignored -> FOR_EACH;
+            case Instruction.For ignored -> FOR;
+            case Instruction.While ignored -> WHILE;
+            case Instruction.ForNext ignored -> FOR_NEXT;
+            case Instruction.If ignored -> IF;
+            case Instruction.IfJump ignored -> IF_JUMP;
+            case Instruction.Jump ignored -> JUMP;
+            case Instruction.Return ignored -> RETURN;
+            case Instruction.Wait ignored -> WAIT;
+            case Instruction.Fetch ignored -> FETCH;
+            case Instruction.Switch ignored -> SWITCH;
+            case Instruction.SetScore ignored -> SET_SCORE;
+            // same for tail calls
+            case Instruction.Invoke ignored -> INVOKE;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Writes a linked instruction list; check {@link #supports} first.
+     */
+    public static void write(DataOutput out, List<Instruction> instructions) throws IOException {
+        out.writeInt(instructions.size());
+        for (Instruction instruction : instructions) {
+            out.writeByte(tag(instruction));
+            switch (instruction) {
+                case Instruction.Command command -> out.writeUTF(command.command());
+                case Instruction.Let let -> {
+                    out.writeUTF(let.assignVar);
+                    out.writeByte(let.type);
+                    writeExpression(out, let.post);
+                }
+                case Instruction.ForEach loop -> {
+                    out.writeInt(loop.startAddress);
+                    out.writeInt(loop.jumpTo);
+                    out.writeUTF(loop.assignVar);
+                    out.writeUTF(loop.source);
+                    out.writeUTF(loop.counter);
+                }
+                case Instruction.For loop -> {
+                    out.writeInt(loop.startAddress);
+                    out.writeInt(loop.jumpTo);
+                    out.writeUTF(loop.assignVar);
+                    out.writeUTF(loop.counter);
+                    writeExpression(out, loop.from);
+                    writeExpression(out, loop.to);
+                    writeExpression(out, loop.step);
+                }
+                case Instruction.ForNext next -> {
+                    out.writeInt(next.jumpTo);
+                    out.writeUTF(next.assignVar);
+                    out.writeUTF(next.counter);
+                }
+                case Instruction.If cond -> {
+                    if (cond instanceof Instruction.While loop) {
+                        out.writeInt(loop.startAddress);
+                    }
+                    out.writeInt(cond.jumpTo);
+                    out.writeUTF(cond.cmp);
+                    writeExpression(out, cond.left);
+                    writeExpression(out, cond.right);
+                }
+                case Instruction.IfJump jump -> {
+                    out.writeInt(jump.jumpTo);
+                    out.writeInt(jump.depth);
+                }
+                case Instruction.Jump jump -> out.writeInt(jump.jumpTo);
+                case Instruction.Return ret -> {
+                    out.writeByte(ret.inferredType);
+                    if (ret.inferredType >= 0) {
+                        writeExpression(out, ret.post);
+                    }
+                }
+                case Instruction.Wait wait -> writeExpression(out, wait.post);
+                case Instruction.Fetch fetch -> {
+                    out.writeByte(fetch.type);
+                    out.writeUTF(fetch.assignVar);
+                }
+                case Instruction.Switch sw -> {
+                    writeExpression(out, sw.post);
+                    out.writeInt(sw.defaultTarget);
+                    out.writeShort(sw.cases.size());
+                    for (Map.Entry<String, Integer> e : sw.cases.entrySet()) {
+                        out.writeUTF(e.getKey());
+                        out.writeInt(e.getValue());
+                    }
+                    out.writeShort(sw.options == null ? -1 : sw.options.length);
+                    if (sw.options != null) {
+                        for (String option : sw.options) {
+                            out.writeUTF(option);
+                        }
+                    }
+                }
+                case Instruction.SetScore set -> {
+                    writeExpression(out, set.holder);
+                    writeExpression(out, set.objective);
+                    writeExpression(out, set.value);
+                }
+                case Instruction.Invoke call -> {
+                    out.writeByte(call.type);
+                    out.writeUTF(call.assignVar);
+                    out.writeUTF(call.callee);
+                    out.writeShort(call.args.size());
+                    for (Queue<Object> arg : call.args) {
+                        writeExpression(out, arg);
+                    }
+                }
+                default -> throw new IOException("can't encode instruction " + instruction);
+            }
+        }
+    }
+
+    /**
+     * Reads an instruction list written by {@link #write}. The result still has to be linked.
+     */
+    public static List<Instruction> read(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<Instruction> instructions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            instructions.add(switch (in.readByte()) {
+                case COMMAND -> new Instruction.Command(in.readUTF());
+                case LET -> new Instruction.Let(in.readUTF(), in.readByte(), readExpression(in));
+                case JUMP -> new Instruction.Jump(in.readInt());
+                case IF_JUMP -> new Instruction.IfJump(in.readInt(), in.readInt());
+                case IF -> new Instruction.If(in.readInt(), in.readUTF(), readExpression(in), readExpression(in));
+                case WHILE -> new Instruction.While(in.readInt(), in.readInt(), in.readUTF(), readExpression(in), readExpression(in));
+                case RETURN -> {
+                    int type = in.readByte();
+                    yield new Instruction.Return(type, type >= 0 ? readExpression(in) : new LinkedList<>());
+                }
+                case FOR_EACH -> new Instruction.ForEach(in.readInt(), in.readInt(), in.readUTF(), in.readUTF(), in.readUTF());
+                case FOR -> new Instruction.For(in.readInt(), in.readInt(), in.readUTF(), in.readUTF(), readExpression(in),
+                        readExpression(in), readExpression(in));
+                case FOR_NEXT -> new Instruction.ForNext(in.readInt(), in.readUTF(), in.readUTF());
+                case WAIT -> new Instruction.Wait(readExpression(in));
+                case FETCH -> new Instruction.Fetch(in.readByte(), in.readUTF());
+                case SWITCH -> readSwitch(in);
+                case INVOKE -> readInvoke(in);
+                case SET_SCORE -> new Instruction.SetScore(readExpression(in), readExpression(in), readExpression(in));
+                default -> throw new IOException("unknown instruction tag");
+            });
+        }
+        return instructions;
+    }
+
+    private static Instruction.Switch readSwitch(DataInput in) throws IOException {
+        Queue<Object> post = readExpression(in);
+        int defaultTarget = in.readInt();
+        LinkedHashMap<String, Integer> cases = new LinkedHashMap<>();
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            cases.put(in.readUTF(), in.readInt());
+        }
+        String[] options = null;
+        int size = in.readShort();
+        if (size >= 0) {
+            options = new String[size];
+            for (int i = 0; i < size; i++) {
+                options[i] = in.readUTF();
+            }
+        }
+        return new Instruction.Switch(post, cases, defaultTarget, options);
+    }
+
+    private static Instruction.Invoke readInvoke(DataInput in) throws IOException {
+        int type = in.readByte();
+        String assignVar = in.readUTF(), callee = in.readUTF();
+        List<Queue<Object>> args = new ArrayList<>();
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            args.add(readExpression(in));
+        }
+        return new Instruction.Invoke(type, assignVar, callee, args);
+    }
+
+    private static void writeExpression(DataOutput out, Queue<Object> post) throws IOException {
+        out.writeShort(post.size());
+        for (Object o : post) {
+            switch (o) {
+                case String op -> {
+                    out.writeByte(OP);
+                    out.writeUTF(op);
+                }
+                case Integer slot -> {
+                    out.writeByte(SLOT);
+                    out.writeShort(slot);
+                }
+                case Operator.NumberOperator n when n.getValue() instanceof Long l -> {
+                    out.writeByte(LONG);
+                    out.writeLong(l);
+                }
+                case Operator.NumberOperator n -> {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(n.getDoubleValue());
+                }
+                case Operator.StringOperator s -> {
+                    out.writeByte(STRING);
+                    out.writeUTF(s.str());
+                }
+                case Intrinsic.Call call -> {
+                    out.writeByte(CALL);
+                    out.writeUTF(call.intrinsic().name);
+                    out.writeByte(call.argc());
+                }
+                default -> throw new IOException("can't encode token " + o);
+            }
+        }
+    }
+
+    private static Queue<Object> readExpression(DataInput in) throws IOException {
+        int size = in.readUnsignedShort();
+        Queue<Object> post = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            post.add(switch (in.readByte()) {
+                case OP -> in.readUTF();
+                case SLOT -> in.readUnsignedShort();
+                case LONG -> new Operator.NumberOperator(in.readLong());
+                case DOUBLE -> new Operator.NumberOperator(in.readDouble());
+                case STRING -> new Operator.StringOperator(in.readUTF());
+                case CALL -> {
+                    Intrinsic intrinsic = Intrinsic.get(in.readUTF());
+                    if (intrinsic == null) {
+                        throw new IOException("unknown intrinsic");
+                    }
+                    yield new Intrinsic.Call(intrinsic, in.readByte());
+                }
+                default -> throw new IOException("unknown token tag");
+            });
+        }
+        return post;
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.birblett.impl.command.alias.language;
+
+import com.birblett.impl.command.alias.AliasScoreboard;
+
+import java.util.HashMap;
+
+/**
+ * Built-in functions callable from expressions, i.e. [let x = max(a, b) + score("@s", "kills")]. Calls are type checked
+ * when the expression is parsed and evaluated directly on the operand stack, without going through commands. The static
+ * helpers at the bottom are shared with generated bytecode so both behave the same.
+ */
+public enum Intrinsic {
+
+    MIN("min", 2, 2, true),
+    MAX("max", 2, 2, true),
+    ABS("abs", 1, 1, true),
+    SQRT("sqrt", 1, 1, true),
+    FLOOR("floor", 1, 1, true),
+    LENGTH("length", 1, 1, true),
+    SUBSTRING("substring", 2, 3, true),
+    SCORE("score", 2, 2, false);
+
+    private static final HashMap<String, Intrinsic> BY_NAME = new HashMap<>();
+
+    static {
+        for (Intrinsic intrinsic : values()) {
+            BY_NAME.put(intrinsic.name, intrinsic);
+        }
+    }
+
+    public final String name;
+    public final int minArgs;
+    public final int maxArgs;
+    // whether calls on constants can be evaluated ahead of time
+    public final boolean pure;
+
+    Intrinsic(String name, int minArgs, int maxArgs, boolean pure) {
+        this.name = name;
+        this.minArgs = minArgs;
+        this.maxArgs = maxArgs;
+        this.pure = pure;
+    }
+
+    /**
+     * @return the intrinsic with the given name, or null if there isn't one
+     */
+    public static Intrinsic get(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * A call in a postfix queue, taking its arguments from the top of the stack.
+     */
+    public record Call(Intrinsic intrinsic, int argc) {
+
+        @Override
+        public String toString() {
+            return this.intrinsic.name + "/" + this.argc;
+        }
+
+    }
+
+    /**
+     * Checks argument types, using the same type ids as {@link AliasConstants#TYPE_MAP}.
+     * @return type of the result, or null if the arguments don't fit, after reporting the error
+     */
+    public Integer check(int[] types, ExpressionParser parser) {
+        if (types.length < this.minArgs || types.length > this.maxArgs) {
+            parser.error(this.name + " expects " + (this.minArgs == this.maxArgs ? this.minArgs : this.minArgs + "-" + this.maxArgs) +
+                    " argument(s), got " + types.length);
+            return null;
+        }
+        for (int i = 0; i < types.length; i++) {
+            boolean string = this == LENGTH || this == SCORE || this == SUBSTRING && i == 0;
+            if (string && types[i] != 4) {
+                parser.error(this.name + " expects a string as argument " + (i + 1));
+                return null;
+            }
+            if (!string && types[i] == 4) {
+                parser.error(this.name + " expects a number as argument " + (i + 1));
+                return null;
+            }
+            if (this == SUBSTRING && i > 0 && types[i] > 1) {
+                parser.error(this.name + " expects an integer as argument " + (i + 1));
+                return null;
+            }
+        }
+        return switch (this) {
+            case MIN, MAX -> Math.max(types[0], types[1]);
+            case ABS -> types[0];
+            case SQRT -> 3;
+            case FLOOR, LENGTH -> 1;
+            case SUBSTRING -> 4;
+            case SCORE -> 0;
+        };
+    }
+
+    /**
+     * Applies the function to the arguments on top of a frame's operand stack, storing the result in place of the first.
+     * @param a stack index of the first argument
+     */
+    void apply(Frame frame, int a, int argc) {
+        byte[] kinds = frame.stackKinds;
+        long[] ls = frame.stackLongs;
+        double[] ds = frame.stackDoubles;
+        switch (this) {
+            case MIN, MAX -> {
+                if (kinds[a] == Frame.LONG && kinds[a + 1] == Frame.LONG) {
+                    ls[a] = this == MIN ? Math.min(ls[a], ls[a + 1]) : Math.max(ls[a], ls[a + 1]);
+                }
+                else {
+                    double l = number(frame, a), r = number(frame, a + 1);
+                    ds[a] = this == MIN ? Math.min(l, r) : Math.max(l, r);
+                    kinds[a] = Frame.DOUBLE;
+                }
+            }
+            case ABS -> {
+                if (kinds[a] == Frame.LONG) {
+                    ls[a] = Math.abs(ls[a]);
+                }
+                else {
+                    ds[a] = Math.abs(number(frame, a));
+                    kinds[a] = Frame.DOUBLE;
+                }
+            }
+            case SQRT -> {
+                ds[a] = Math.sqrt(number(frame, a));
+                kinds[a] = Frame.DOUBLE;
+            }
+            case FLOOR -> {
+                if (kinds[a] != Frame.LONG) {
+                    ls[a] = (long) Math.floor(number(frame, a));
+                    kinds[a] = Frame.LONG;
+                }
+            }
+            case LENGTH -> {
+                ls[a] = length(frame.renderStack(a));
+                kinds[a] = Frame.LONG;
+            }
+            case SUBSTRING -> {
+                String s = frame.renderStack(a);
+                frame.stackStrings[a] = substring(s, index(frame, a + 1), argc > 2 ? index(frame, a + 2) : Long.MAX_VALUE);
+                kinds[a] = Frame.STRING;
+            }
+            case SCORE -> {
+                ls[a] = score(frame, frame.renderStack(a), frame.renderStack(a + 1));
+                kinds[a] = Frame.LONG;
+            }
+        }
+    }
+
+    /**
+     * Numeric value of a stack entry; strings count as 0, same as when fetching them as a number.
+     */
+    private static double number(Frame frame, int sp) {
+        return switch (frame.stackKinds[sp]) {
+            case Frame.LONG -> frame.stackLongs[sp];
+            case Frame.DOUBLE -> frame.stackDoubles[sp];
+            default -> 0;
+        };
+    }
+
+    private static long index(Frame frame, int sp) {
+        return frame.stackKinds[sp] == Frame.LONG ? frame.stackLongs[sp] : (long) number(frame, sp);
+    }
+
+    public static long score(Frame frame, String holder, String objective) {
+        return AliasScoreboard.get(frame.source, holder, objective);
+    }
+
+    public static long length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * Substring with indices clamped to the string, so out of range indices never fail.
+     */
+    public static String substring(String s, long start, long end) {
+        if (s == null) {
+            return "";
+        }
+        int len = s.length();
+        int from = Math.clamp(start, 0, len), to = Math.clamp(end, 0, len);
+        return from < to ? s.substring(from, to) : "";
+    }
+
+}
@@ -19,6 +19,8 @@ public interface Operator {
     class NumberOperator implements Operator {
 
         private boolean isLong = true;
+        // float literals are held as doubles, but still type as floats
+        private boolean isFloat = false;
         private long longVal;
         private double doubleVal;
 
@@ -41,7 +43,9 @@ public interface Operator {
                     if (s.endsWith("s")) {
                         return new NumberOperator(Double.parseDouble(s.substring(0, s.length() - 1)));
                     }
-                    return new NumberOperator(Double.parseDouble(s));
+                    NumberOperator n = new NumberOperator(Double.parseDouble(s));
+                    n.isFloat = s.endsWith("f") || s.endsWith("F");
+                    return n;
                 }
                 catch (NumberFormatException f) {
                     return null;
@@ -49,6 +53,10 @@ public interface Operator {
             }
         }
 
+        public boolean isFloat() {
+            return this.isFloat;
+        }
+
         public double getDoubleValue() {
             return this.isLong ? this.longVal : this.doubleVal;
         }
@@ -0,0 +1,413 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * Optimizing pass run over a freshly compiled instruction list, before variables are linked to slots. Folds constant
+ * subexpressions, propagates variables that are only ever assigned a constant before any control flow, resolves
+ * conditions that are always true or false, threads jumps that land on other jumps, and removes no-op and unreachable
+ * instructions. Runtime behavior is otherwise unchanged, apart from fewer instructions counting toward the limit.
+ */
+public class Optimizer {
+
+    private final Frame scratch = new Frame(0);
+    private final List<Instruction> instructions;
+    private final Set<String> arguments;
+    public final int before;
+    private int folded = 0, conditions = 0, threaded = 0, removed = 0;
+    private final List<String> propagated = new ArrayList<>();
+
+    private Optimizer(List<Instruction> instructions, Set<String> arguments) {
+        this.instructions = instructions;
+        this.arguments = arguments;
+        this.before = instructions.size();
+    }
+
+    /**
+     * Optimizes an instruction list in place.
+     * @param instructions compiled instructions, with jump targets already resolved
+     * @param arguments names of alias arguments, which are never treated as constants
+     * @return the optimizer, for reporting what changed
+     */
+    public static Optimizer optimize(List<Instruction> instructions, Set<String> arguments) {
+        Optimizer optimizer = new Optimizer(instructions, arguments);
+        boolean changed;
+        do {
+            changed = false;
+            for (Instruction instruction : instructions) {
+                switch (instruction) {
+                    case Instruction.Let let -> changed |= optimizer.fold(let.post);
+                    case Instruction.For loop -> changed |= optimizer.fold(loop.from) | optimizer.fold(loop.to) |
+                            optimizer.fold(loop.step);
+                    case Instruction.If cond -> changed |= optimizer.fold(cond.left) | optimizer.fold(cond.right);
+                    case Instruction.Return ret -> changed |= optimizer.fold(ret.post);
+                    case Instruction.Wait wait -> changed |= optimizer.fold(wait.post);
+                    case Instruction.Switch sw -> changed |= optimizer.fold(sw.post);
+                    case Instruction.SetScore set -> changed |= optimizer.fold(set.holder) | optimizer.fold(set.objective) |
+                            optimizer.fold(set.value);
+                    case Instruction.Invoke call -> {
+                        for (Queue<Object> arg : call.args) {
+                            changed |= optimizer.fold(arg);
+                        }
+                    }
+                    default -> {}
+                }
+            }
+            changed |= optimizer.propagate();
+        } while (changed);
+        optimizer.resolveConditions();
+        optimizer.thread();
+        while (optimizer.compact()) {
+            optimizer.thread();
+        }
+        return optimizer;
+    }
+
+    /**
+     * @return a short summary of what the pass did, one entry per line
+     */
+    public List<String> report() {
+        List<String> out = new ArrayList<>();
+        out.add("Instructions: " + this.before + " -> " + this.instructions.size());
+        if (this.folded > 0) {
+            out.add("Folded " + this.folded + " constant operation(s)");
+        }
+        if (!this.propagated.isEmpty()) {
+            out.add("Propagated constant variable(s): " + String.join(", ", this.propagated));
+        }
+        if (this.conditions > 0) {
+            out.add("Resolved " + this.conditions + " constant condition(s)");
+        }
+        if (this.threaded > 0) {
+            out.add("Threaded " + this.threaded + " jump(s)");
+        }
+        if (this.removed > 0) {
+            out.add("Removed " + this.removed + " unreachable or no-op instruction(s)");
+        }
+        return out;
+    }
+
+    private static boolean isOperator(Object o) {
+        return o instanceof String s && s.length() == 1 && "+-*/^%".contains(s);
+    }
+
+    /**
+     * Evaluates a single operation or intrinsic call on constants with the same evaluator used at runtime.
+     * @return the result, or null if it can't be evaluated ahead of time (i.e. integer division by zero)
+     */
+    private Operator evaluate(List<Operator> operands, Object op) {
+        try {
+            LinkedList<Object> post = new LinkedList<>(operands);
+            post.add(op);
+            new Expression(post).evaluate(this.scratch, 0);
+            return this.scratch.operand(0);
+        }
+        catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Folds every operation in a postfix queue whose operands are both constant.
+     * @return whether anything was folded
+     */
+    private boolean fold(Queue<Object> post) {
+        Deque<List<Object>> stack = new ArrayDeque<>();
+        boolean changed = false;
+        for (Object o : post) {
+            List<Object> operand = new ArrayList<>();
+            int argc = isOperator(o) ? 2 : o instanceof Intrinsic.Call call ? call.argc() : 0;
+            boolean foldable = !(o instanceof Intrinsic.Call call) || call.intrinsic().pure;
+            if (argc > 0 && stack.size() >= argc) {
+                List<List<Object>> args = new ArrayList<>();
+                for (int i = 0; i < argc; i++) {
+                    args.addFirst(stack.pop());
+                }
+                List<Operator> constants = new ArrayList<>();
+                for (List<Object> arg : args) {
+                    if (arg.size() == 1 && arg.getFirst() instanceof Operator value) {
+                        constants.add(value);
+                    }
+                }
+                Operator result = foldable && constants.size() == argc ? this.evaluate(constants, o) : null;
+                if (result != null) {
+                    operand.add(result);
+                    this.folded++;
+                    changed = true;
+                }
+                else {
+                    args.forEach(operand::addAll);
+                    operand.add(o);
+                }
+            }
+            else {
+                operand.add(o);
+            }
+            stack.push(operand);
+        }
+        if (changed && stack.size() == 1) {
+            post.clear();
+            post.addAll(stack.pop());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces variables that are assigned exactly once, to a constant, before any control flow and before being read.
+     * Such an assignment always runs before every read, so reads can use the constant directly and the assignment goes.
+     * @return whether anything was propagated
+     */
+    private boolean propagate() {
+        HashMap<String, Integer> assignments = new HashMap<>();
+        HashMap<String, Integer> firstRead = new HashMap<>();
+        for (int i = 0; i < this.instructions.size(); i++) {
+            int index = i;
+            switch (this.instructions.get(i)) {
+                case Instruction.Let let -> {
+                    assignments.merge(let.assignVar, 1, Integer::sum);
+                    reads(let.post).forEach(var -> firstRead.putIfAbsent(var, index));
+                }
+                case Instruction.Fetch fetch -> assignments.merge(fetch.assignVar, 1, Integer::sum);
+                case Instruction.Invoke call -> {
+                    call.args.forEach(arg -> reads(arg).forEach(var -> firstRead.putIfAbsent(var, index)));
+                    assignments.merge(call.assignVar, 1, Integer::sum);
+                }
+                case Instruction.ForEach loop -> {
+                    assignments.merge(loop.assignVar, 1, Integer::sum);
+                    assignments.merge(loop.counter, 1, Integer::sum);
+                }
+                case Instruction.For loop -> {
+                    reads(loop.from).forEach(var -> firstRead.putIfAbsent(var, index));
+                    reads(loop.to).forEach(var -> firstRead.putIfAbsent(var, index));
+                    reads(loop.step).forEach(var -> firstRead.putIfAbsent(var, index));
+                    assignments.merge(loop.assignVar, 1, Integer::sum);
+                }
+                case Instruction.ForNext next -> assignments.merge(next.assignVar, 1, Integer::sum);
+                case Instruction.If cond -> {
+                    reads(cond.left).forEach(var -> firstRead.putIfAbsent(var, index));
+                    reads(cond.right).forEach(var -> firstRead.putIfAbsent(var, index));
+                }
+                case Instruction.Return ret -> reads(ret.post).forEach(var -> firstRead.putIfAbsent(var, index));
+                case Instruction.Wait wait -> reads(wait.post).forEach(var -> firstRead.putIfAbsent(var, index));
+                case Instruction.Switch sw -> reads(sw.post).forEach(var -> firstRead.putIfAbsent(var, index));
+                case Instruction.SetScore set -> {
+                    reads(set.holder).forEach(var -> firstRead.putIfAbsent(var, index));
+                    reads(set.objective).forEach(var -> firstRead.putIfAbsent(var, index));
+                    reads(set.value).forEach(var -> firstRead.putIfAbsent(var, index));
+                }
+                case Instruction.Command command -> {
+                    Matcher m = AliasConstants.PLACEHOLDER.matcher(command.command());
+                    while (m.find()) {
+                        firstRead.putIfAbsent(m.group(1), index);
+                    }
+                }
+                default -> {}
+            }
+        }
+        for (int i = 0; i < this.instructions.size(); i++) {
+            Instruction instruction = this.instructions.get(i);
+            // propagated assignments are left behind as no-op jumps until compaction
+            if (instruction instanceof Instruction.Jump jump && (jump instanceof Instruction.If || jump.jumpTo >= 0) ||
+                    instruction instanceof Instruction.Switch) {
+                break;
+            }
+            if (instruction instanceof Instruction.Let let && let.post.size() == 1 && let.post.peek() instanceof Operator value &&
+                    !this.arguments.contains(let.assignVar) && assignments.get(let.assignVar) == 1 &&
+                    firstRead.getOrDefault(let.assignVar, Integer.MAX_VALUE) > i) {
+                String text = value instanceof Operator.StringOperator s ? s.str() : value.getValue().toString();
+                // don't create new placeholders by substituting text into commands
+                if (text.contains("{$")) {
+                    continue;
+                }
+                this.substitute(let.assignVar, value, text);
+                this.instructions.set(i, new Instruction.Jump(-1));
+                this.propagated.add(let.assignVar);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> reads(Queue<Object> post) {
+        List<String> out = new ArrayList<>();
+        for (Object o : post) {
+            if (o instanceof String s && !isOperator(s)) {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private void substitute(String var, Operator value, String text) {
+        for (int i = 0; i < this.instructions.size(); i++) {
+            switch (this.instructions.get(i)) {
+                case Instruction.Let let -> replace(let.post, var, value);
+                case Instruction.For loop -> {
+                    replace(loop.from, var, value);
+                    replace(loop.to, var, value);
+                    replace(loop.step, var, value);
+                }
+                case Instruction.If cond -> {
+                    replace(cond.left, var, value);
+                    replace(cond.right, var, value);
+                }
+                case Instruction.Return ret -> replace(ret.post, var, value);
+                case Instruction.Wait wait -> replace(wait.post, var, value);
+                case Instruction.Switch sw -> replace(sw.post, var, value);
+                case Instruction.SetScore set -> {
+                    replace(set.holder, var, value);
+                    replace(set.objective, var, value);
+                    replace(set.value, var, value);
+                }
+                case Instruction.Invoke call -> call.args.forEach(arg -> replace(arg, var, value));
+                case Instruction.Command command -> {
+                    if (command.command().contains("{$" + var + "}")) {
+                        this.instructions.set(i, new Instruction.Command(command.command().replace("{$" + var + "}", text)));
+                    }
+                }
+                default -> {}
+            }
+        }
+    }
+
+    private static void replace(Queue<Object> post, String var, Operator value) {
+        for (int i = post.size(); i > 0; i--) {
+            Object o = post.poll();
+            post.add(var.equals(o) ? value : o);
+        }
+    }
+
+    /**
+     * Conditions comparing two constants either always pass, becoming a no-op, or always fail, becoming a jump. Switches
+     * on a constant become a jump to the matching case.
+     */
+    private void resolveConditions() {
+        for (int i = 0; i < this.instructions.size(); i++) {
+            if (this.instructions.get(i) instanceof Instruction.Switch sw && sw.post.size() == 1 && sw.post.peek() instanceof Operator value) {
+                new Expression(new LinkedList<>(List.of(value))).evaluate(this.scratch, 0);
+                this.instructions.set(i, new Instruction.Jump(sw.target(this.scratch.renderStack(0))));
+                this.conditions++;
+                continue;
+            }
+            if (this.instructions.get(i) instanceof Instruction.If cond && cond.left.size() == 1 && cond.right.size() == 1 &&
+                    cond.left.peek() instanceof Operator l && cond.right.peek() instanceof Operator r) {
+                new Expression(new LinkedList<>(List.of(l))).evaluate(this.scratch, 0);
+                new Expression(new LinkedList<>(List.of(r))).evaluate(this.scratch, 1);
+                boolean passes = Expression.compare(this.scratch, Expression.comparator(cond.cmp), 0, 1);
+                this.instructions.set(i, new Instruction.Jump(passes ? -1 : cond.jumpTo));
+                this.conditions++;
+            }
+        }
+    }
+
+    /**
+     * @return where control actually goes when jumping to an index, following any chain of unconditional jumps
+     */
+    private int follow(int target) {
+        for (int hops = 0; hops < this.instructions.size() && target >= 0 && target < this.instructions.size(); hops++) {
+            Instruction instruction = this.instructions.get(target);
+            if (!(instruction instanceof Instruction.Jump jump) || instruction instanceof Instruction.If) {
+                break;
+            }
+            target = jump.jumpTo < 0 ? target + 1 : jump.jumpTo;
+        }
+        return target;
+    }
+
+    private void thread() {
+        for (int i = 0; i < this.instructions.size(); i++) {
+            if (this.instructions.get(i) instanceof Instruction.Switch sw) {
+                sw.retarget(target -> {
+                    int resolved = this.follow(target);
+                    if (resolved != target) {
+                        this.threaded++;
+                    }
+                    return resolved;
+                });
+            }
+            else if (this.instructions.get(i) instanceof Instruction.Jump jump) {
+                int target = jump.jumpTo < 0 ? (jump instanceof Instruction.If ? -1 : i + 1) : jump.jumpTo;
+                if (target < 0) {
+                    continue;
+                }
+                int resolved = this.follow(target);
+                if (resolved != target) {
+                    jump.jumpTo = resolved;
+                    this.threaded++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes unreachable instructions and unconditional jumps to the next instruction, remapping jump targets.
+     * @return whether anything was removed
+     */
+    private boolean compact() {
+        int size = this.instructions.size();
+        boolean[] reachable = new boolean[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            if (i < 0 || i >= size || reachable[i]) {
+                continue;
+            }
+            reachable[i] = true;
+            switch (this.instructions.get(i)) {
+                case Instruction.If cond -> {
+                    queue.add(i + 1);
+                    queue.add(cond.jumpTo < 0 ? i + 1 : cond.jumpTo);
+                }
+                case Instruction.Jump jump -> queue.add(jump.jumpTo < 0 ? i + 1 : jump.jumpTo);
+                case Instruction.Switch sw -> queue.addAll(sw.targets());
+                case Instruction.Return ignored -> {}
+                default -> queue.add(i + 1);
+            }
+        }
+        boolean[] keep = new boolean[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Instruction instruction = this.instructions.get(i);
+            keep[i] = reachable[i] && !(instruction instanceof Instruction.Jump jump && !(instruction instanceof Instruction.If) &&
+                    (jump.jumpTo < 0 || jump.jumpTo == i + 1));
+            if (keep[i]) {
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        // a removed instruction is either unreachable or falls through, so its index maps to the next kept instruction
+        int[] remap = new int[size + 1];
+        for (int i = 0, next = 0; i <= size; i++) {
+            remap[i] = next;
+            if (i < size && keep[i]) {
+                next++;
+            }
+        }
+        List<Instruction> out = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                Instruction instruction = this.instructions.get(i);
+                if (instruction instanceof Instruction.Jump jump && jump.jumpTo >= 0) {
+                    jump.jumpTo = remap[Math.min(jump.jumpTo, size)];
+                }
+                if (instruction instanceof Instruction.While loop) {
+                    loop.startAddress = remap[Math.min(Math.max(loop.startAddress, 0), size)];
+                }
+                if (instruction instanceof Instruction.Switch sw) {
+                    sw.retarget(target -> remap[Math.min(target, size)]);
+                }
+                out.add(instruction);
+            }
+        }
+        this.removed += size - kept;
+        this.instructions.clear();
+        this.instructions.addAll(out);
+        return true;
+    }
+
+}
@@ -5,12 +5,12 @@ import com.mojang.brigadier.arguments.ArgumentType;
 import java.util.function.Function;
 
 /**
- * The basic variable for use during program execution. Holds a definition and a value.
- *
- * @param type
- * @param value
+ * Compile-time variable information. Values themselves are held in a {@link Frame} during program execution, indexed by
+ * the slot each variable name is resolved to.
  */
-public record Variable(Definition type, Object value) {
+public final class Variable {
+
+    private Variable() {}
 
     /**
      * Defines variable type, primarily for use with arguments.
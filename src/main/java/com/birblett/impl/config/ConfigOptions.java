@@ -21,6 +21,26 @@ public class ConfigOptions {
             "configWriteOnlyChanges", true,
             "If enabled, only changed configurations will be written to storage.",
             true);
+    public static final ConfigOption<Boolean> ALIAS_BYTECODE_COMPILATION = ConfigOption.boolConfig(
+            "aliasBytecodeCompilation", true,
+            "Whether aliases should be compiled to JVM bytecode where possible. Aliases that can't be compiled, " +
+                    "or all aliases if disabled, run on the interpreter instead.");
+    public static final ConfigOption<Boolean> ALIAS_OPTIMIZATION = ConfigOption.boolConfig(
+            "aliasOptimization", true,
+            "Whether compiled aliases should be optimized, folding constants and removing redundant jumps and " +
+                    "unreachable instructions.");
+    public static final ConfigOption<Boolean> ALIAS_PROFILING = ConfigOption.boolConfig(
+            "aliasProfiling", false,
+            "Whether alias executions should be timed, viewable with /alias profile. Profiled aliases always " +
+                    "run on the interpreter so that individual instructions can be timed.");
+    public static final ConfigOption<Boolean> ALIAS_LAZY_COMPILATION = ConfigOption.boolConfig(
+            "aliasLazyCompilation", true,
+            "Whether aliases loaded on startup or reload should only be compiled when first executed. Compile " +
+                    "errors are still checked for in the background and logged.");
+    public static final ConfigOption<Boolean> ALIAS_COMPILE_CACHE = ConfigOption.boolConfig(
+            "aliasCompileCache", true,
+            "Whether compiled aliases should be cached on disk, so unchanged aliases don't need to be recompiled on " +
+                    "every start.");
     public static final ConfigOption<Integer> ALIAS_DEFAULT_PERMISSION = ConfigOption.intConfig(
             "aliasDefaultPermission", 0,
             "Default permission level required to execute aliases.",
@@ -36,9 +56,27 @@ public class ConfigOptions {
             -1, Integer.MAX_VALUE, "-1", "20");
     public static final ConfigOption<Integer> ALIAS_MAX_RECURSION_DEPTH = ConfigOption.intConfig(
             "aliasMaxRecursionDepth", 500,
-            "Maximum number of recursive calls. Setting too high may result in " +
-                    "stack overflow for some recursive programs.",
+            "Maximum number of nested alias executions in a single call chain. Direct calls between " +
+                    "interpreted aliases don't use up the stack, but setting this too high may still result in " +
+                    "stack overflow for recursion through commands or bytecode compiled aliases.",
             0, Integer.MAX_VALUE, "500");
+    public static final ConfigOption<Integer> ALIAS_PURE_CACHE_SIZE = ConfigOption.intConfig(
+            "aliasPureCacheSize", 256,
+            "Maximum number of results cached per pure alias, one for each combination of arguments. " +
+                    "Least recently used results are dropped first. Set to 0 to disable caching.",
+            0, Integer.MAX_VALUE, "0", "256");
+    public static final ConfigOption<Integer> ALIAS_TICK_INSTRUCTION_BUDGET = ConfigOption.intConfig(
+            "aliasTickInstructionBudget", -1,
+            "Maximum number of alias instructions run across the whole server per tick. Aliases that run out " +
+                    "are paused and continue on the next tick. Aliases are interpreted rather than run as " +
+                    "bytecode while set. Set to -1 for no limit.",
+            -1, Integer.MAX_VALUE, "-1", "100000");
+    public static final ConfigOption<Integer> ALIAS_TICK_TIME_BUDGET = ConfigOption.intConfig(
+            "aliasTickTimeBudget", -1,
+            "Maximum time in microseconds spent running aliases per tick, across the whole server. Aliases that " +
+                    "run out are paused and continue on the next tick. Aliases are interpreted rather than run as " +
+                    "bytecode while set. Set to -1 for no limit.",
+            -1, 1000000, "-1", "10000");
     public static final ConfigOption<Boolean> ALIAS_MODIFY_COMPILE = ConfigOption.boolConfig(
             "aliasCompileOnModification", true,
             "Whether aliases should be compiled whenever they are modified. When false, " +
@@ -1,6 +1,7 @@
 package com.birblett.mixin;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.AliasScheduler;
 import com.birblett.impl.command.stat.TrackedStatManager;
 import com.birblett.util.ServerUtil;
 import net.minecraft.scoreboard.ScoreboardObjective;
@@ -14,6 +15,8 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.function.BooleanSupplier;
+
 /**
  * Config and alias initialize and cleanup.
  */
@@ -46,6 +49,18 @@ public class MinecraftServerMixin {
         ServerUtil.refreshCommandTree(server);
     }
 
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void startAliasTick(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        // runs even while the tick manager is frozen, so paused aliases still get to finish
+        AliasScheduler.startTick(((MinecraftServer) (Object) this).getTicks());
+        AliasScheduler.resumeDeferred();
+    }
+
+    @Inject(method = "tick", at = @At("TAIL"))
+    private void flushCommandTree(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        ServerUtil.flushCommandTree((MinecraftServer) (Object) this);
+    }
+
     @Inject(method = "shutdown", at = @At("HEAD"))
     private void serverStopped(CallbackInfo ci) {
         if (this.configurable) {
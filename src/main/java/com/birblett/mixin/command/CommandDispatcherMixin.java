@@ -0,0 +1,28 @@
+package com.birblett.mixin.command;
+
+import com.birblett.accessor.command.CommandDispatcherModifier;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.context.CommandContextBuilder;
+import com.mojang.brigadier.tree.CommandNode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+/**
+ * Exposes parsing from an arbitrary node, so aliases can resume from a cached parse of a command's fixed prefix.
+ */
+@Mixin(CommandDispatcher.class)
+public class CommandDispatcherMixin<S> implements CommandDispatcherModifier<S> {
+
+    @Shadow
+    private ParseResults<S> parseNodes(CommandNode<S> node, StringReader originalReader, CommandContextBuilder<S> contextSoFar) {
+        throw new AssertionError();
+    }
+
+    @Override
+    public ParseResults<S> technicalToolbox$parseNodes(CommandNode<S> node, StringReader reader, CommandContextBuilder<S> context) {
+        return this.parseNodes(node, reader, context);
+    }
+
+}
@@ -1,17 +1,22 @@
 package com.birblett.mixin.command;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.accessor.command.CommandManagerModifier;
 import com.birblett.impl.command.CameraCommand;
 import com.birblett.impl.command.ToolboxCommand;
 import com.birblett.impl.command.alias.AliasCommand;
-import com.birblett.impl.command.alias.AliasManager;
-import com.birblett.impl.command.alias.AliasedCommand;
 import com.birblett.impl.command.delay.DelayCommand;
 import com.birblett.impl.command.stat.StatCommand;
+import com.birblett.util.ServerUtil;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
 import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.command.CommandSource;
+import net.minecraft.network.packet.s2c.play.CommandTreeS2CPacket;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -19,14 +24,24 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Registers some custom commands. Aliases and camera command are registered on-demand as well.
+ * Registers some custom commands. Aliases and camera command are registered on-demand as well. Command tree packets are
+ * shared between players who see the same tree, see {@link ServerUtil#sendCommandTree}.
  */
 @Mixin(CommandManager.class)
-public class CommandManagerMixin {
+public class CommandManagerMixin implements CommandManagerModifier {
 
     @Shadow @Final private CommandDispatcher<ServerCommandSource> dispatcher;
 
+    @Shadow
+    private void makeTreeForSource(CommandNode<ServerCommandSource> tree, CommandNode<CommandSource> result, ServerCommandSource source,
+                                   Map<CommandNode<ServerCommandSource>, CommandNode<CommandSource>> resultNodes) {
+        throw new AssertionError();
+    }
+
     @Inject(method = "<init>", at = @At("RETURN"))
     private void onRegister(CommandManager.RegistrationEnvironment environment, CommandRegistryAccess commandRegistryAccess, CallbackInfo ci) {
         ToolboxCommand.register(this.dispatcher);
@@ -34,14 +49,23 @@ public class CommandManagerMixin {
         CameraCommand.register(this.dispatcher);
         DelayCommand.register(this.dispatcher);
         StatCommand.register(this.dispatcher, commandRegistryAccess);
-        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
-            try {
-                aliasedCommand.register(this.dispatcher);
-            }
-            catch (Exception e) {
-                TechnicalToolbox.error("Something went wrong with compiling alias {}", aliasedCommand.getAlias());
-            }
-        }
+        TechnicalToolbox.ALIAS_MANAGER.registerAliases(this.dispatcher);
+    }
+
+    @Inject(method = "sendCommandTree", at = @At("HEAD"), cancellable = true)
+    private void sendSharedCommandTree(ServerPlayerEntity player, CallbackInfo ci) {
+        ServerUtil.sendCommandTree((CommandManager) (Object) this, player);
+        ci.cancel();
+    }
+
+    @Override
+    public CommandTreeS2CPacket technicalToolbox$buildCommandTree(ServerCommandSource source) {
+        // same as vanilla, minus the sending
+        Map<CommandNode<ServerCommandSource>, CommandNode<CommandSource>> map = new HashMap<>();
+        RootCommandNode<CommandSource> root = new RootCommandNode<>();
+        map.put(this.dispatcher.getRoot(), root);
+        this.makeTreeForSource(this.dispatcher.getRoot(), root, source, map);
+        return new CommandTreeS2CPacket(root);
     }
 
 }
\ No newline at end of file
@@ -13,7 +13,6 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 
-import java.util.HashMap;
 import java.util.HashSet;
 
 /**
@@ -24,7 +23,6 @@ public class ServerCommandSourceMixin implements CommandSourceModifier {
 
     @Unique private boolean overridePermissions = false;
     @Unique private boolean shutUp = false;
-    @Unique private final HashMap<String, String> selectorMap = new HashMap<>();
     @Unique private final HashSet<ScoreboardCriterion> criteria = new HashSet<>();
     @Unique private Operator ret = null;
 
@@ -38,16 +36,6 @@ public class ServerCommandSourceMixin implements CommandSourceModifier {
         this.shutUp = shutUp;
     }
 
-    @Override
-    public void technicalToolbox$addSelector(String name, String value) {
-        this.selectorMap.put(name, value);
-    }
-
-    @Override
-    public String technicalToolbox$getSelectorArgument(String name) {
-        return this.selectorMap.get(name);
-    }
-
     @Override
     public void technicalToolbox$setReturnValue(Operator o) {
         this.ret = o;
@@ -12,7 +12,6 @@ public class ServerCommandSourceMixin implements AliasedCommandSource {
 
     @Unique private final HashMap<String, Object> commandOptions = new HashMap<>();
     @Unique private int instructionCount = 0;
-    @Unique private int recursionCount = 0;
     @Unique private Object returns = null;
 
     @Override
@@ -40,14 +39,4 @@ public class ServerCommandSourceMixin implements AliasedCommandSource {
         return this.instructionCount;
     }
 
-    @Override
-    public void technicalToolbox$AddToRecursionDepth(int i) {
-        this.recursionCount += i;
-    }
-
-    @Override
-    public int technicalToolbox$getRecursionCount() {
-        return this.recursionCount;
-    }
-
 }
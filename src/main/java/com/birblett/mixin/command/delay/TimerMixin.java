@@ -1,6 +1,7 @@
 package com.birblett.mixin.command.delay;
 
 import com.birblett.accessor.command.delay.CommandScheduler;
+import com.birblett.impl.command.alias.SuspendedAlias;
 import com.birblett.impl.command.delay.CommandEvent;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
@@ -11,8 +12,11 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 @Mixin(Timer.class)
 public class TimerMixin<T> implements CommandScheduler {
@@ -22,6 +26,9 @@ public class TimerMixin<T> implements CommandScheduler {
 
     @Unique private final HashMap<String, CommandEvent> scheduledCommandMap = new HashMap<>();
 
+    // aliases resuming on the same tick run in the order they suspended
+    @Unique private final TreeMap<Long, List<SuspendedAlias>> suspendedAliases = new TreeMap<>();
+
     @Override
     public boolean technicalToolbox$AddCommandEvent(String command, long delay, String id, int priority, boolean silent, ServerCommandSource source) {
         if (!this.scheduledCommandMap.containsKey(id)) {
@@ -47,6 +54,11 @@ public class TimerMixin<T> implements CommandScheduler {
         return this.scheduledCommandMap;
     }
 
+    @Override
+    public void technicalToolbox$AddSuspendedAlias(SuspendedAlias alias) {
+        this.suspendedAliases.computeIfAbsent(alias.tick(), k -> new ArrayList<>()).add(alias);
+    }
+
     @Inject(method = "processEvents", at = @At("TAIL"))
     private void executeSchedule(T server, long time, CallbackInfo ci) {
         if (server instanceof MinecraftServer s) {
@@ -55,6 +67,12 @@ public class TimerMixin<T> implements CommandScheduler {
                 this.scheduledCommandMap.remove(e.id());
                 e.execute(s);
             }
+            // resumed aliases can only suspend again until a later tick, so this always terminates
+            while (!this.suspendedAliases.isEmpty() && this.suspendedAliases.firstKey() <= time) {
+                for (SuspendedAlias alias : this.suspendedAliases.pollFirstEntry().getValue()) {
+                    alias.resume();
+                }
+            }
         }
     }
 
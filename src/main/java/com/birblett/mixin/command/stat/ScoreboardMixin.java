@@ -1,6 +1,7 @@
 package com.birblett.mixin.command.stat;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.AliasScoreboard;
 import com.birblett.impl.command.stat.TrackedStatManager;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
@@ -19,7 +20,8 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import java.util.function.Consumer;
 
 /**
- * Handles tracked stat removal and processes all objectives on world load to track if matching prefix.
+ * Handles tracked stat removal and processes all objectives on world load to track if matching prefix. Also drops removed
+ * objectives from the alias objective cache.
  */
 @Mixin(Scoreboard.class)
 public class ScoreboardMixin {
@@ -31,6 +33,11 @@ public class ScoreboardMixin {
         TrackedStatManager.maybeRemoveScore(objective);
     }
 
+    @Inject(method = "removeObjective", at = @At("HEAD"))
+    private void invalidateAliasObjective(ScoreboardObjective objective, CallbackInfo ci) {
+        AliasScoreboard.invalidate(objective);
+    }
+
     @Inject(method = "readNbt", at = @At(value = "INVOKE", target = "Lnet/minecraft/scoreboard/Scoreboard;getScores(Ljava/lang/String;)Lnet/minecraft/scoreboard/Scores;"))
     private void getAllScores(NbtList list, RegistryWrapper.WrapperLookup registries, CallbackInfo ci, @Local ScoreboardObjective scoreboardObjective) {
         TrackedStatManager.addTrackedObjective(scoreboardObjective);
@@ -1,10 +1,14 @@
 package com.birblett.util;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.accessor.command.CommandManagerModifier;
 import com.birblett.accessor.command.CommandNodeModifier;
+import com.birblett.impl.command.alias.CommandParseCache;
+import com.mojang.brigadier.tree.CommandNode;
 import com.mojang.brigadier.tree.RootCommandNode;
+import net.minecraft.network.packet.s2c.play.CommandTreeS2CPacket;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.ServerTask;
+import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.WorldSavePath;
@@ -12,12 +16,72 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
 
 /**
  * Collection of server-related utilities
  */
 public class ServerUtil {
 
+    /**
+     * The part of a command tree visible to a source.
+     */
+    private static final class TreeView {
+
+        private final CommandNode<?>[] nodes;
+        private final int[] shapes;
+        private final int hash;
+
+        private TreeView(List<CommandNode<?>> nodes, int[] shapes) {
+            this.nodes = nodes.toArray(new CommandNode<?>[0]);
+            this.shapes = shapes;
+            int hash = Arrays.hashCode(shapes);
+            for (CommandNode<?> node : this.nodes) {
+                hash = hash * 31 + System.identityHashCode(node);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TreeView view) || view.hash != this.hash || view.nodes.length != this.nodes.length ||
+                    !Arrays.equals(view.shapes, this.shapes)) {
+                return false;
+            }
+            // nodes are only replaced, never mutated except by gaining children, so identity and shape is enough
+            for (int i = 0; i < this.nodes.length; i++) {
+                if (view.nodes[i] != this.nodes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    private static boolean commandTreeDirty = false;
+    // view of the tree each player was last sent
+    private static final Map<ServerPlayerEntity, TreeView> SENT_TREES = new WeakHashMap<>();
+    // one packet per distinct view of the current tree
+    private static final Map<TreeView, CommandTreeS2CPacket> TREE_PACKETS = new HashMap<>();
+    private static RootCommandNode<ServerCommandSource> packetRoot = null;
+
     /**
      * @param path a relative path to a file
      * @return path to a file on within the current world folder
@@ -65,6 +129,7 @@ public class ServerUtil {
     public static void removeCommandByName(MinecraftServer server, String name) {
         RootCommandNode<ServerCommandSource> r = server.getCommandManager().getDispatcher().getRoot();
         ((CommandNodeModifier) r).technicalToolbox$RemoveStringInstance(name);
+        CommandParseCache.invalidate();
         refreshCommandTree(server);
     }
 
@@ -73,16 +138,98 @@ public class ServerUtil {
      * @param server target server
      */
     public static void refreshCommandTree(MinecraftServer server) {
-        server.send(new ServerTask(server.getTicks(), () -> {
-            try {
-                for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-                    server.getCommandManager().sendCommandTree(player);
+        commandTreeDirty = true;
+    }
+
+    /**
+     * Resends the command tree to players whose view of it changed this tick.
+     * @param server target server
+     */
+    public static void flushCommandTree(MinecraftServer server) {
+        if (!commandTreeDirty) {
+            return;
+        }
+        commandTreeDirty = false;
+        TREE_PACKETS.clear();
+        try {
+            CommandManager manager = server.getCommandManager();
+            RootCommandNode<ServerCommandSource> root = manager.getDispatcher().getRoot();
+            Map<Predicate<ServerCommandSource>, Integer> requirements = new IdentityHashMap<>();
+            requirements(root, requirements);
+            Map<BitSet, TreeView> views = new HashMap<>();
+            for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+                ServerCommandSource source = player.getCommandSource();
+                BitSet passed = new BitSet(requirements.size());
+                requirements.forEach((requirement, index) -> {
+                    if (requirement.test(source)) {
+                        passed.set(index);
+                    }
+                });
+                TreeView view = views.computeIfAbsent(passed, k -> view(root, node -> k.get(requirements.get(node
+                        .getRequirement()))));
+                if (!view.equals(SENT_TREES.get(player))) {
+                    sendCommandTree(manager, player, view);
                 }
             }
-            catch (NullPointerException e) {
-                TechnicalToolbox.error("Failed to update command tree, please report");
+        }
+        catch (NullPointerException e) {
+            TechnicalToolbox.error("Failed to update command tree, please report");
+        }
+    }
+
+    /**
+     * Sends a player the command tree, in place of {@link CommandManager#sendCommandTree}.
+     */
+    public static void sendCommandTree(CommandManager manager, ServerPlayerEntity player) {
+        ServerCommandSource source = player.getCommandSource();
+        sendCommandTree(manager, player, view(manager.getDispatcher().getRoot(), node -> node.canUse(source)));
+    }
+
+    private static void sendCommandTree(CommandManager manager, ServerPlayerEntity player, TreeView view) {
+        // datapack reloads replace the whole dispatcher
+        if (packetRoot != manager.getDispatcher().getRoot()) {
+            packetRoot = manager.getDispatcher().getRoot();
+            TREE_PACKETS.clear();
+        }
+        CommandTreeS2CPacket packet = TREE_PACKETS.computeIfAbsent(view, k -> ((CommandManagerModifier) manager)
+                .technicalToolbox$buildCommandTree(player.getCommandSource()));
+        player.networkHandler.sendPacket(packet);
+        SENT_TREES.put(player, view);
+    }
+
+    /**
+     * @param canUse which nodes are visible
+     * @return the visible part of a command tree, see {@link TreeView}
+     */
+    private static TreeView view(CommandNode<ServerCommandSource> root, Predicate<CommandNode<ServerCommandSource>> canUse) {
+        List<CommandNode<?>> nodes = new ArrayList<>();
+        List<Integer> shapes = new ArrayList<>();
+        collect(root, canUse, nodes, shapes);
+        return new TreeView(nodes, shapes.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Numbers every distinct requirement in a command tree, by identity.
+     */
+    private static void requirements(CommandNode<ServerCommandSource> node, Map<Predicate<ServerCommandSource>, Integer> requirements) {
+        for (CommandNode<ServerCommandSource> child : node.getChildren()) {
+            requirements.putIfAbsent(child.getRequirement(), requirements.size());
+            requirements(child, requirements);
+        }
+    }
+
+    private static void collect(CommandNode<ServerCommandSource> node, Predicate<CommandNode<ServerCommandSource>> canUse,
+                                List<CommandNode<?>> nodes, List<Integer> shapes) {
+        int index = shapes.size(), children = 0;
+        nodes.add(node);
+        shapes.add(0);
+        for (CommandNode<ServerCommandSource> child : node.getChildren()) {
+            if (canUse.test(child)) {
+                collect(child, canUse, nodes, shapes);
+                children++;
             }
-        }));
+        }
+        shapes.set(index, children << 1 | (node.getCommand() != null ? 1 : 0));
     }
 
 }
@@ -0,0 +1,80 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Variable;
+import com.birblett.impl.config.ConfigOptions;
+import com.mojang.brigadier.CommandDispatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AliasedCommandTest {
+
+    @TempDir
+    Path dir;
+
+    private AliasedCommand read(String script) throws Exception {
+        Path file = this.dir.resolve("test.alias");
+        Files.writeString(file, "Alias: test\nCommand list:\n" + script);
+        List<String> errors = new ArrayList<>();
+        AliasedCommand alias = AliasedCommand.readFromFile(file, false, errors);
+        assertNotNull(alias, errors::toString);
+        return alias;
+    }
+
+    // validation runs on a worker thread, so it must not touch anything the server thread reads
+    @Test
+    void validateLeavesStatus() throws Exception {
+        AliasedCommand alias = this.read("say hi\n");
+        String status = alias.status;
+        assertFalse(alias.validate(List.of("[end]"), new LinkedHashMap<String, Variable.Definition>()));
+        assertEquals(status, alias.status);
+        assertTrue(alias.validate(List.of("say hi"), new LinkedHashMap<String, Variable.Definition>()));
+        assertEquals(status, alias.status);
+    }
+
+    // entities only render as names, which no command accepts as an entity argument
+    @Test
+    void entitiesNotSubstituted() throws Exception {
+        AliasedCommand alias = this.read("say hi\n");
+        LinkedHashMap<String, Variable.Definition> arguments = new LinkedHashMap<>();
+        arguments.put("targets", new Variable.Definition("targets", "entities", new String[0]));
+        assertFalse(alias.validate(List.of("kill {$targets}"), arguments));
+        assertTrue(alias.validate(List.of("[foreach target in targets]", "kill {$target}", "[end]"), arguments));
+    }
+
+    // a loop variable can only reuse an outer variable that already holds whole numbers
+    @Test
+    void forVariableClash() throws Exception {
+        AliasedCommand alias = this.read("say hi\n");
+        LinkedHashMap<String, Variable.Definition> arguments = new LinkedHashMap<>();
+        arguments.put("n", new Variable.Definition("n", "int", new String[0]));
+        assertFalse(alias.validate(List.of("[let i = \"x\"]", "[for i in 1..3]", "[end]"), arguments));
+        assertTrue(alias.validate(List.of("[for n in 1..3]", "[end]"), arguments));
+    }
+
+    // direct calls don't depend on the optimizer
+    @Test
+    void callsBoundWithoutOptimization() throws Exception {
+        ConfigOptions.ALIAS_OPTIMIZATION.setFromString("false");
+        AliasManager.setCallable("callee", true);
+        try {
+            AliasedCommand alias = this.read("callee 1\nsay hi\n");
+            assertTrue(alias.register(new CommandDispatcher<>()), () -> alias.status);
+            assertInstanceOf(Instruction.Call.class, alias.getCompiled().instructions.getFirst());
+        }
+        finally {
+            AliasManager.setCallable("callee", false);
+            AliasManager.ALIASES.remove("test");
+            ConfigOptions.ALIAS_OPTIMIZATION.setFromString(ConfigOptions.ALIAS_OPTIMIZATION.getDefaultValue());
+        }
+    }
+
+}
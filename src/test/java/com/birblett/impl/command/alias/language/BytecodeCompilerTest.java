@@ -0,0 +1,318 @@
+package com.birblett.impl.command.alias.language;
+
+import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.impl.command.alias.AliasCache;
+import com.birblett.impl.command.alias.AliasManager;
+import com.birblett.impl.command.alias.AliasScheduler;
+import com.birblett.impl.command.alias.AliasedCommand;
+import com.birblett.impl.config.ConfigOptions;
+import com.mojang.brigadier.CommandDispatcher;
+import net.minecraft.server.command.CommandOutput;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.Vec2f;
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential tests for generated programs. Every script is run by the interpreter without optimizations, which is the
+ * reference implementation, then as generated bytecode with and without the optimizer, and then on both backends after a
+ * round trip through the compile cache; all of them have to return the same values and send the same errors for the
+ * same inputs.
+ */
+class BytecodeCompilerTest {
+
+    /**
+     * What a single execution returned and what errors it sent.
+     */
+    private record Result(String value, List<String> errors) {}
+
+    @TempDir
+    Path dir;
+    // set for scripts the generator leaves to the interpreter even when bytecode is enabled
+    private boolean interpretedOnly = false;
+
+    @AfterEach
+    void restoreConfig() {
+        ConfigOptions.ALIAS_BYTECODE_COMPILATION.setFromString(ConfigOptions.ALIAS_BYTECODE_COMPILATION.getDefaultValue());
+        ConfigOptions.ALIAS_OPTIMIZATION.setFromString(ConfigOptions.ALIAS_OPTIMIZATION.getDefaultValue());
+        ConfigOptions.ALIAS_COMPILE_CACHE.setFromString(ConfigOptions.ALIAS_COMPILE_CACHE.getDefaultValue());
+        ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.setFromString(ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.getDefaultValue());
+        ConfigOptions.ALIAS_INSTRUCTION_LIMIT.setFromString(ConfigOptions.ALIAS_INSTRUCTION_LIMIT.getDefaultValue());
+        AliasScheduler.startTick(0);
+        AliasManager.setCallable("test", false);
+        AliasManager.ALIASES.remove("test");
+    }
+
+    @Test
+    void arithmetic() throws Exception {
+        this.check("{$a:int} {$b:double}", """
+                [let x = a % 3 * 7 - a / 2]
+                [let y = b * a - b ^ 2]
+                [let z = (a - 1) % 4]
+                [return x + y + " " + z]
+                """, "7 2.5", "-4 0.5", "0 -1.25", "12 3");
+    }
+
+    @Test
+    void conditionsAndLoops() throws Exception {
+        this.check("{$loops:int}", """
+                [let i = 1]
+                [let out = ""]
+                [while i - 1 < loops]
+                    [let x = i + ""]
+                    [if i % 15 = 0]
+                        [let x = "fizzbuzz"]
+                    [elif i % 3 = 0]
+                        [let x = "fizz"]
+                    [elif i % 5 = 0]
+                        [let x = "buzz"]
+                    [end]
+                    [let out = out + x + ","]
+                    [let i = i + 1]
+                [end]
+                [return out]
+                """, "0", "1", "15", "31");
+    }
+
+    @Test
+    void countedLoops() throws Exception {
+        this.check("{$n:int} {$s:int}", """
+                [let out = ""]
+                [for i in 1..n step s]
+                    [for j in i..1 step 0 - 1]
+                        [let out = out + j]
+                    [end]
+                    [let out = out + ";"]
+                [end]
+                [for x in 0.5..n]
+                    [let x = x * 10]
+                    [let out = out + x]
+                [end]
+                [return out]
+                """, "5 1", "6 2", "4 0", "3 -1");
+    }
+
+    // stepping past the end of the long range would wrap back into it
+    @Test
+    void countedLoopBounds() throws Exception {
+        List<Result> results = this.check("{$from:long} {$to:long} {$s:long}", """
+                [let n = 0]
+                [let last = 0]
+                [for i in from..to step s]
+                    [let n = n + 1]
+                    [let last = i]
+                [end]
+                [return n + " " + last]
+                """, "9223372036854775805 9223372036854775807 1", "9223372036854775800 9223372036854775807 5",
+                "-9223372036854775806 -9223372036854775808 -1", "0 9223372036854775807 4611686018427387904");
+        assertEquals("StringOperator 3 9223372036854775807", results.getFirst().value());
+        assertEquals("StringOperator 2 9223372036854775805", results.get(1).value());
+        assertEquals("StringOperator 3 -9223372036854775808", results.get(2).value());
+        assertEquals("StringOperator 2 4611686018427387904", results.get(3).value());
+    }
+
+    @Test
+    void switches() throws Exception {
+        this.check("{$op:string} {$a:int}", """
+                [let r = 0]
+                [switch op]
+                [case add]
+                    [let r = a + a]
+                [case mul]
+                    [let r = a * a]
+                [default]
+                    [let r = 0 - a]
+                [end]
+                [return r]
+                """, "add 3", "mul 3", "none 3");
+    }
+
+    @Test
+    void strings() throws Exception {
+        this.check("{$s:string} {$a:int}", """
+                [let t = substring(s, 1) + length(s)]
+                [return t + max(a, 2) + abs(0 - a) + min(a, 2.5) + floor(a / 2.0)]
+                """, "hello 5", "x -7");
+    }
+
+    @Test
+    void instructionLimit() throws Exception {
+        this.check("{$a:int}", """
+                [let i = 0]
+                [while 0 = 0]
+                    [let i = i + a]
+                [end]
+                [return i]
+                """, "1");
+    }
+
+    // each self-call starts the script over in the same frame, so this never nests executions
+    @Test
+    void tailCalls() throws Exception {
+        ConfigOptions.ALIAS_INSTRUCTION_LIMIT.setFromString("-1");
+        AliasManager.setCallable("test", true);
+        List<Result> results = this.check("{$n:int} {$acc:long}", """
+                [if n < 1]
+                    [return acc]
+                [end]
+                [let m = n - 1]
+                [let a = acc + n]
+                test {$m} {$a}
+                """, "100000 0");
+        assertEquals("NumberOperator 5000050000", results.getFirst().value());
+    }
+
+    // recursive aliases are always interpreted, so they don't nest java calls
+    @Test
+    void recursionLimit() throws Exception {
+        this.interpretedOnly = true;
+        AliasManager.setCallable("test", true);
+        List<Result> results = this.check("{$n:int}", """
+                [if n < 1]
+                    [return 0]
+                [end]
+                [call long r = test(n - 1)]
+                [return r + 1]
+                """, "10", String.valueOf(ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val() + 10));
+        assertEquals("NumberOperator 10", results.getFirst().value());
+        assertFalse(results.get(1).errors().isEmpty(), "recursion limit not reached");
+    }
+
+    // a tail [call] whose callee returns nothing still assigns 0
+    @Test
+    void tailCallWithoutResult() throws Exception {
+        AliasManager.setCallable("test", true);
+        List<Result> results = this.check("{$n:int}", """
+                [if n > 0]
+                    [call long r = test(n - 1)]
+                    [return r]
+                [end]
+                """, "0", "3");
+        assertEquals("NumberOperator 0", results.get(1).value());
+    }
+
+    // generated programs can't be paused, so budgeted aliases have to be interpreted to be spread over several ticks
+    @Test
+    void budgetSplitsLoops() throws Exception {
+        ConfigOptions.ALIAS_TICK_INSTRUCTION_BUDGET.setFromString("1000");
+        AliasScheduler.startTick(0);
+        CommandDispatcher<ServerCommandSource> dispatcher = this.register("{$n:int}", """
+                [let i = 0]
+                [while i < n]
+                    [let i = i + 1]
+                [end]
+                [return i]
+                """, true, true);
+        ServerCommandSource source = source(new ArrayList<>());
+        dispatcher.execute("test 2000", source);
+        int ticks = 1;
+        while (((CommandSourceModifier) source).technicalToolbox$getReturnValue() == null && ticks < 100) {
+            AliasScheduler.startTick(ticks++);
+            AliasScheduler.resumeDeferred();
+        }
+        assertEquals(2000L, ((CommandSourceModifier) source).technicalToolbox$getReturnValue().getValue());
+        assertTrue(ticks > 2, "finished in " + ticks + " tick(s)");
+    }
+
+    private List<Result> check(String arguments, String script, String... inputs) throws Exception {
+        List<Result> reference = this.run(arguments, script, false, false, false, inputs);
+        for (boolean optimize : new boolean[]{false, true}) {
+            assertEquals(reference, this.run(arguments, script, true, optimize, false, inputs), "optimize=" + optimize);
+            for (boolean bytecode : new boolean[]{false, true}) {
+                assertEquals(reference, this.run(arguments, script, bytecode, optimize, true, inputs), "cached, optimize=" +
+                        optimize + ", bytecode=" + bytecode);
+            }
+        }
+        return reference;
+    }
+
+    private CommandDispatcher<ServerCommandSource> register(String arguments, String script, boolean bytecode, boolean optimize) throws Exception {
+        return this.register(arguments, script, bytecode, optimize, false);
+    }
+
+    /**
+     * @param cached whether to write the compiled alias to the compile cache first and load it from there
+     */
+    private CommandDispatcher<ServerCommandSource> register(String arguments, String script, boolean bytecode, boolean optimize,
+                                                            boolean cached) throws Exception {
+        ConfigOptions.ALIAS_BYTECODE_COMPILATION.setFromString(String.valueOf(bytecode));
+        ConfigOptions.ALIAS_OPTIMIZATION.setFromString(String.valueOf(optimize));
+        ConfigOptions.ALIAS_COMPILE_CACHE.setFromString("false");
+        Path file = this.dir.resolve("test.alias");
+        Files.writeString(file, "Alias: test\nArguments: " + arguments + "\nCommand list:\n" + script);
+        List<String> errors = new ArrayList<>();
+        Path cache = this.dir.resolve("test.bin");
+        if (cached) {
+            AliasedCommand fresh = AliasedCommand.readFromFile(file, false, errors);
+            assertNotNull(fresh, errors::toString);
+            assertTrue(fresh.register(new CommandDispatcher<>()), () -> fresh.status);
+            byte[] hash = AliasCache.hash(fresh.getCommands(), fresh.getArguments(), optimize, fresh.isPure());
+            Files.deleteIfExists(cache);
+            AliasCache.write(cache, hash, fresh.getCompiled());
+            assertNotNull(AliasCache.read(cache, hash, fresh, fresh.getArguments(), bytecode), "not cached");
+            ConfigOptions.ALIAS_COMPILE_CACHE.setFromString("true");
+        }
+        AliasedCommand alias = AliasedCommand.readFromFile(file, false, errors);
+        assertNotNull(alias, errors::toString);
+        if (cached) {
+            alias.setCacheFile(cache);
+        }
+        CommandDispatcher<ServerCommandSource> dispatcher = new CommandDispatcher<>();
+        assertTrue(alias.register(dispatcher), () -> alias.status);
+        assertEquals(bytecode && !this.interpretedOnly, alias.isBytecodeCompiled(), "ran on the wrong backend");
+        return dispatcher;
+    }
+
+    private List<Result> run(String arguments, String script, boolean bytecode, boolean optimize, boolean cached, String... inputs)
+            throws Exception {
+        CommandDispatcher<ServerCommandSource> dispatcher = this.register(arguments, script, bytecode, optimize, cached);
+        List<Result> results = new ArrayList<>();
+        for (String input : inputs) {
+            List<String> messages = new ArrayList<>();
+            ServerCommandSource source = source(messages);
+            dispatcher.execute("test " + input, source);
+            Operator value = ((CommandSourceModifier) source).technicalToolbox$getReturnValue();
+            results.add(new Result(value != null ? value.getClass().getSimpleName() + " " + value.getValue() : null, messages));
+        }
+        AliasManager.ALIASES.remove("test");
+        return results;
+    }
+
+    private static ServerCommandSource source(List<String> messages) {
+        CommandOutput output = new CommandOutput() {
+
+            @Override
+            public void sendMessage(Text message) {
+                messages.add(message.getString());
+            }
+
+            @Override
+            public boolean shouldReceiveFeedback() {
+                return true;
+            }
+
+            @Override
+            public boolean shouldTrackOutput() {
+                return true;
+            }
+
+            @Override
+            public boolean shouldBroadcastConsoleToOps() {
+                return false;
+            }
+
+        };
+        return new ServerCommandSource(output, Vec3d.ZERO, Vec2f.ZERO, null, 4, "test", Text.literal("test"), null, null);
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionParserTest {
+
+    private static int type(String expr) {
+        List<String> errors = new ArrayList<>();
+        ExpressionParser parser = errors::add;
+        Integer type = parser.parseExpression(expr, null, List.of(new LinkedHashMap<>()), new ArrayDeque<>());
+        assertNotNull(type, errors::toString);
+        return type;
+    }
+
+    // expressions with calls are typed separately from the token scan, and both have to agree on literals
+    @Test
+    void literalTypes() {
+        for (String call : new String[]{"%s", "abs(%s)"}) {
+            assertEquals(0, type(call.formatted("1")));
+            assertEquals(1, type(call.formatted("10000000000")));
+            assertEquals(2, type(call.formatted("1.5f")));
+            assertEquals(3, type(call.formatted("1.5")));
+        }
+    }
+
+}
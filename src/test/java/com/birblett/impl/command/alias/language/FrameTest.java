@@ -0,0 +1,28 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameTest {
+
+    // pooled frames are reset between executions, and nothing from the previous one may show through
+    @Test
+    void resetSlotsReadAsZero() {
+        Frame frame = new Frame(3);
+        frame.setLong(0, 7);
+        frame.setDouble(1, 2.5);
+        frame.setString(2, "text");
+        frame.reset();
+        for (int slot = 0; slot < frame.size(); slot++) {
+            assertEquals(Frame.UNSET, frame.kind(slot));
+            assertEquals(0, frame.getLong(slot));
+            assertEquals(0, frame.getDouble(slot));
+            assertNull(frame.render(slot));
+            frame.push(slot, slot);
+            assertEquals(Frame.LONG, frame.stackKinds[slot]);
+            assertEquals(0, frame.stackLongs[slot]);
+        }
+    }
+
+}